@@ -0,0 +1,92 @@
+package sample.context;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The scale and the rounding mode of the currencies.
+ * <p>
+ * The metadata is resolved by the array index of the 3-letter code, so the
+ * lookup does not allocate. The scales default to the fraction digits of
+ * java.util.Currency, and "sample.currency.scales" (e.g. "JPY:0,USD:2")
+ * overrides them.
+ */
+@Component
+public class CurrencyRegistry {
+    /** The registry of the defaults. */
+    public static final CurrencyRegistry DEFAULT = new CurrencyRegistry(List.of(), RoundingMode.DOWN);
+
+    private static final int LETTERS = 26;
+
+    private final CurrencyScale[] scales = new CurrencyScale[LETTERS * LETTERS * LETTERS];
+
+    @Autowired
+    public CurrencyRegistry(
+            @Value("${sample.currency.scales:}") List<String> overrides,
+            @Value("${sample.currency.rounding:DOWN}") RoundingMode mode) {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int index = index(currency.getCurrencyCode());
+            if (0 <= index) {
+                scales[index] = new CurrencyScale(
+                        currency.getCurrencyCode(), Math.max(0, currency.getDefaultFractionDigits()), mode);
+            }
+        }
+        for (String override : overrides) {
+            String[] v = override.trim().split(":");
+            int index = index(v[0]);
+            if (v.length != 2 || index < 0) {
+                throw new IllegalArgumentException("Invalid currency scale [" + override + "]");
+            }
+            scales[index] = new CurrencyScale(v[0], Integer.parseInt(v[1]), mode);
+        }
+    }
+
+    /** Returns the metadata of the currency code. */
+    public CurrencyScale of(String currency) {
+        int index = index(currency);
+        CurrencyScale scale = 0 <= index ? scales[index] : null;
+        if (scale == null) {
+            throw new IllegalArgumentException("Unknown currency [" + currency + "]");
+        }
+        return scale;
+    }
+
+    private static int index(String code) {
+        if (code == null || code.length() != 3) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            int c = code.charAt(i) - 'A';
+            if (c < 0 || LETTERS <= c) {
+                return -1;
+            }
+            index = index * LETTERS + c;
+        }
+        return index;
+    }
+
+    /** The scale and the rounding mode of the currency. */
+    public static record CurrencyScale(String code, int scale, RoundingMode mode) {
+
+        /** Returns the amount rounded in the scale. */
+        public BigDecimal round(BigDecimal amount) {
+            return amount.setScale(scale, mode);
+        }
+
+        /**
+         * Returns amount + addAmount rounded in the scale.
+         * (the arithmetic of the balance update, without Calculator)
+         */
+        public BigDecimal add(BigDecimal amount, BigDecimal addAmount) {
+            return round(amount.add(addAmount));
+        }
+    }
+
+}
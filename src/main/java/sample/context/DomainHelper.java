@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 import lombok.RequiredArgsConstructor;
 import sample.context.actor.Actor;
 import sample.context.actor.ActorSession;
+import sample.context.cache.DomainCache;
 import sample.context.spring.ObjectProviderAccessor;
 import sample.context.uid.IdGenerator;
 
@@ -29,12 +30,24 @@ public interface DomainHelper {
     /** Returns the ID generator. */
     IdGenerator uid();
 
+    /** Returns the scale and the rounding mode of the currencies. */
+    default CurrencyRegistry currency() {
+        return CurrencyRegistry.DEFAULT;
+    }
+
+    /** Returns the in-memory cache. (disabled unless it is configured) */
+    default DomainCache cache() {
+        return DomainCache.DISABLED;
+    }
+
     @Component
     @RequiredArgsConstructor
     public static class DomainHelperImpl implements DomainHelper {
         private final ObjectProvider<Timestamper> time;
         private final ObjectProvider<IdGenerator> uid;
         private final ObjectProvider<MessageAccessor> msg;
+        private final ObjectProvider<DomainCache> cache;
+        private final ObjectProvider<CurrencyRegistry> currency;
         private final ObjectProviderAccessor accessor;
 
         @Override
@@ -51,6 +64,16 @@ public interface DomainHelper {
         public IdGenerator uid() {
             return this.accessor.bean(this.uid, IdGenerator.class);
         }
+
+        @Override
+        public CurrencyRegistry currency() {
+            return this.accessor.bean(this.currency, CurrencyRegistry.class);
+        }
+
+        @Override
+        public DomainCache cache() {
+            return this.accessor.bean(this.cache, DomainCache.class);
+        }
     }
 
 }
@@ -7,4 +7,8 @@ public interface ErrorKeys {
     String Exception = "error.Exception";
     /** Information was not found. */
     String EntityNotFound = "error.EntityNotFoundException";
+    /** The lock could not be acquired within the timeout. */
+    String LockTimeout = "error.LockTimeout";
+    /** The lease of the lock was lost while it was held. */
+    String LockLost = "error.LockLost";
 }
@@ -1,15 +1,25 @@
 package sample.context.audit;
 
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
 import sample.context.InvocationException;
 import sample.context.ValidationException;
 import sample.context.actor.Actor;
 import sample.context.actor.ActorSession;
+import sample.context.audit.AuditRecord.AuditStatusType;
 
 /**
  * Handles user auditing and EDP audit (scheduled batch processing or
@@ -20,29 +30,52 @@ import sample.context.actor.ActorSession;
  * <p>
  * The target log is written to both Logger and the audit table of
  * the system schema.
- * (You can detect unresponsive states by using separate transactions
+ * (You can detect unresponsive states by using separate records
  * for start and completion.)
+ * <p>
+ * The request thread only enqueues the records, and AuditWriter writes them in
+ * the background.
+ * <p>
+ * The elapsed time is measured by System.nanoTime, and recorded into the
+ * latency timer "sample.audit.usecase" and the outcome counter
+ * "sample.audit.usecase.outcome" (End/Warning/Exception) of each message.
+ * low: The message is the tag of the operation, so it should be a constant.
  */
 @Component
-public class AuditHandler {
+@RequiredArgsConstructor
+public class AuditHandler implements MeterBinder {
     public static final Logger loggerActor = LoggerFactory.getLogger("Audit.Actor");
     public static final Logger loggerEvent = LoggerFactory.getLogger("Audit.Event");
 
+    private final AuditWriter writer;
+    /** The meters of each message. */
+    private final Map<String, AuditMetrics> metrics = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        this.metrics.clear();
+    }
+
     public <T> T audit(String message, final Callable<T> callable) {
-        this.logger().trace(message(message, "[Start]", null));
-        long start = System.currentTimeMillis();
+        Actor actor = ActorSession.actor();
+        String auditId = writer.nextId();
+        long start = System.nanoTime();
+        writer.append(new AuditRecord(
+                auditId, auditId, actor, message, AuditStatusType.PROCESSING, null, System.currentTimeMillis()));
         try {
             T v = callable.call();
-            this.logger().info(message(message, "[ End ]", start));
+            finish(auditId, actor, message, AuditStatusType.PROCESSED, start);
             return v;
         } catch (ValidationException e) {
-            this.logger().warn(message(message, "[Warning]", start));
+            finish(auditId, actor, message, AuditStatusType.WARNING, start);
             throw e;
         } catch (RuntimeException e) {
-            this.logger().error(message(message, "[Exception]", start));
+            finish(auditId, actor, message, AuditStatusType.ERROR, start);
             throw (RuntimeException) e;
         } catch (Exception e) {
-            this.logger().error(message(message, "[Exception]", start));
+            finish(auditId, actor, message, AuditStatusType.ERROR, start);
             throw new InvocationException("error.Exception", e);
         }
     }
@@ -54,23 +87,53 @@ public class AuditHandler {
         });
     }
 
-    private Logger logger() {
-        return ActorSession.actor().roleType().isSystem() ? loggerEvent : loggerActor;
+    private void finish(String auditId, Actor actor, String message, AuditStatusType statusType, long start) {
+        long elapsed = System.nanoTime() - start;
+        metrics(message).record(statusType, elapsed);
+        writer.append(new AuditRecord(writer.nextId(), auditId, actor, message, statusType,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), System.currentTimeMillis()));
     }
 
-    private String message(String message, String prefix, Long startMillis) {
-        Actor actor = ActorSession.actor();
-        var sb = new StringBuilder(prefix + " ");
-        if (actor.roleType().isAnonymous()) {
-            sb.append("[" + actor.source() + "] ");
-        } else if (actor.roleType().notSystem()) {
-            sb.append("[" + actor.id() + "] ");
+    /** Returns the meters of the message. (registered at the first use) */
+    AuditMetrics metrics(String message) {
+        AuditMetrics v = metrics.get(message);
+        return v != null ? v : metrics.computeIfAbsent(message, k -> AuditMetrics.of(registry, k));
+    }
+
+    /** The latency timer and the outcome counters of an operation. */
+    static record AuditMetrics(Timer latency, Counter processed, Counter warning, Counter error) {
+
+        void record(AuditStatusType statusType, long elapsedNanos) {
+            latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            switch (statusType) {
+                case PROCESSED -> processed.increment();
+                case WARNING -> warning.increment();
+                case ERROR -> error.increment();
+                default -> {
+                }
+            }
         }
-        sb.append(message);
-        if (startMillis != null) {
-            sb.append(" [" + (System.currentTimeMillis() - startMillis) + "ms]");
+
+        static AuditMetrics of(MeterRegistry registry, String operation) {
+            Timer latency = Timer.builder("sample.audit.usecase")
+                    .description("Time of the audited use case.")
+                    .tag("operation", operation)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            return new AuditMetrics(latency,
+                    counter(registry, operation, "End"),
+                    counter(registry, operation, "Warning"),
+                    counter(registry, operation, "Exception"));
+        }
+
+        private static Counter counter(MeterRegistry registry, String operation, String outcome) {
+            return Counter.builder("sample.audit.usecase.outcome")
+                    .description("Count of the audited use case by the outcome.")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry);
         }
-        return sb.toString();
     }
 
 }
@@ -0,0 +1,32 @@
+package sample.context.audit;
+
+import sample.context.actor.Actor;
+
+/**
+ * The audit record, which AuditHandler enqueues into AuditWriter.
+ * <p>
+ * The start and the completion of a use case are separate records of the same
+ * auditId. (the start record has no elapsedMillis)
+ */
+public record AuditRecord(
+        String id,
+        String auditId,
+        Actor actor,
+        String message,
+        AuditStatusType statusType,
+        Long elapsedMillis,
+        long recordMillis) {
+
+    /** Returns true when it is the record of the system. (audit_event) */
+    public boolean event() {
+        return actor.roleType().isSystem();
+    }
+
+    public static enum AuditStatusType {
+        PROCESSING,
+        PROCESSED,
+        WARNING,
+        ERROR;
+    }
+
+}
@@ -0,0 +1,76 @@
+package sample.context.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The bounded lock-free ring buffer of many producers and one consumer.
+ * <p>
+ * A producer claims a slot by CAS on the tail and publishes the element into
+ * it. The consumer takes the published elements in the order of the claims,
+ * and clears the slots before it advances the head.
+ */
+public class AuditRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /** Written only by the consumer. */
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to the power of 2
+     */
+    public AuditRingBuffer(int capacity) {
+        this.capacity = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Returns the count of the claimed elements. (approximate) */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /** Returns false when the buffer is full. */
+    public boolean offer(E e) {
+        while (true) {
+            long t = tail.get();
+            if (capacity <= t - head) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & mask), e);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes the published elements up to max. (call it from one thread)
+     *
+     * @return the count of the taken elements
+     */
+    public int drain(Consumer<E> consumer, int max) {
+        long h = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (h & mask);
+            E e = slots.get(index);
+            if (e == null) {
+                break; // empty, or claimed and not published yet
+            }
+            slots.lazySet(index, null);
+            head = ++h;
+            count++;
+            consumer.accept(e);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,303 @@
+package sample.context.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.actor.Actor;
+import sample.context.audit.AuditRecord.AuditStatusType;
+import sample.context.uid.TimeIdGenerator;
+
+/**
+ * Writes the audit records to the loggers and AUDIT_ACTOR/AUDIT_EVENT in the
+ * background.
+ * <p>
+ * The records are enqueued into AuditRingBuffer, and one writer thread formats
+ * the log and inserts them with the JDBC batch. When the buffer is full, the
+ * record is handled by "sample.audit.backpressure". (SPILL by default)
+ * <ul>
+ * <li>BLOCK - waits for the room of the buffer
+ * <li>DROP - drops the record and counts it
+ * <li>SPILL - appends the record to "sample.audit.spill-file" (one line of TSV)
+ * </ul>
+ * The records of a failed JDBC batch are appended to the spill file as well,
+ * whatever the policy is.
+ */
+@Component
+@Slf4j
+public class AuditWriter implements MeterBinder {
+    private static final String INSERT_ACTOR = "INSERT INTO audit_actor"
+            + " (id, audit_id, actor_id, role_type, source, message, status_type, elapsed_ms, record_date)"
+            + " VALUES (:id, :auditId, :actorId, :roleType, :source, :message, :statusType, :elapsedMs, :recordDate)";
+    private static final String INSERT_EVENT = "INSERT INTO audit_event"
+            + " (id, audit_id, message, status_type, elapsed_ms, record_date)"
+            + " VALUES (:id, :auditId, :message, :statusType, :elapsedMs, :recordDate)";
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final boolean tableEnabled;
+    private final AuditRingBuffer<AuditRecord> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BackpressurePolicy policy;
+    private final Path spillFile;
+    private final TimeIdGenerator uid;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running = true;
+    private volatile Thread writer;
+    private BufferedWriter spill;
+
+    public AuditWriter(
+            DataSource dataSource,
+            @Value("${sample.audit.table:true}") boolean tableEnabled,
+            @Value("${sample.audit.capacity:8192}") int capacity,
+            @Value("${sample.audit.batch-size:256}") int batchSize,
+            @Value("${sample.audit.flush-interval:200ms}") Duration flushInterval,
+            @Value("${sample.audit.backpressure:SPILL}") BackpressurePolicy policy,
+            @Value("${sample.audit.spill-file:audit-spill.tsv}") Path spillFile,
+            @Value("${sample.uid.node:0}") int node) {
+        this.jdbc = new NamedParameterJdbcTemplate(dataSource);
+        this.tableEnabled = tableEnabled;
+        this.buffer = new AuditRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.policy = policy;
+        this.spillFile = spillFile;
+        this.uid = new TimeIdGenerator(node);
+    }
+
+    @PostConstruct
+    public void start() {
+        Thread thread = new Thread(this::run, "audit-writer");
+        thread.setDaemon(true);
+        this.writer = thread;
+        thread.start();
+    }
+
+    /** Returns the ID of the audit record. */
+    public String nextId() {
+        return uid.next();
+    }
+
+    /** Enqueues the record. (the backpressure policy applies when the buffer is full) */
+    public void append(AuditRecord record) {
+        if (buffer.offer(record)) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK -> {
+                while (!buffer.offer(record)) {
+                    if (!running) {
+                        dropped.increment();
+                        return;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+            case SPILL -> spill(record);
+            default -> dropped.increment();
+        }
+    }
+
+    private synchronized void spill(AuditRecord record) {
+        try {
+            if (spill == null) {
+                spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spill.write(String.join("\t", record.id(), record.auditId(), record.actor().id(),
+                    record.actor().roleType().name(), String.valueOf(record.actor().source()),
+                    record.message().replaceAll("[\t\r\n]", " "), record.statusType().name(),
+                    String.valueOf(record.elapsedMillis()), String.valueOf(record.recordMillis())));
+            spill.newLine();
+            spill.flush();
+            spilled.increment();
+        } catch (IOException e) {
+            log.error("Failure spill audit record [" + record.id() + "].", e);
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (running || 0 < buffer.size()) {
+            buffer.drain(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                if (running) {
+                    LockSupport.parkNanos(flushIntervalNanos);
+                } else if (0 < buffer.size()) {
+                    Thread.onSpinWait(); // the claimed record is being published
+                }
+                continue;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<AuditRecord> batch) {
+        for (AuditRecord record : batch) {
+            log(record);
+        }
+        if (!tableEnabled) {
+            written.add(batch.size());
+            return;
+        }
+        List<AuditRecord> actors = new ArrayList<>();
+        List<AuditRecord> events = new ArrayList<>();
+        for (AuditRecord record : batch) {
+            (record.event() ? events : actors).add(record);
+        }
+        insert(INSERT_ACTOR, actors);
+        insert(INSERT_EVENT, events);
+    }
+
+    private void insert(String sql, List<AuditRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            jdbc.batchUpdate(sql, records.stream().map(this::params).toArray(SqlParameterSource[]::new));
+            written.add(records.size());
+        } catch (DataAccessException e) {
+            log.error("Failure write audit records, they are spilled to " + spillFile + ".", e);
+            failed.add(records.size());
+            records.forEach(this::spill);
+        }
+    }
+
+    private MapSqlParameterSource params(AuditRecord record) {
+        Actor actor = record.actor();
+        return new MapSqlParameterSource()
+                .addValue("id", record.id())
+                .addValue("auditId", record.auditId())
+                .addValue("actorId", actor.id())
+                .addValue("roleType", actor.roleType().name())
+                .addValue("source", actor.source())
+                .addValue("message", record.message().length() <= 256 ? record.message()
+                        : record.message().substring(0, 256))
+                .addValue("statusType", record.statusType().name())
+                .addValue("elapsedMs", record.elapsedMillis())
+                .addValue("recordDate", new Timestamp(record.recordMillis()));
+    }
+
+    private void log(AuditRecord record) {
+        Logger logger = record.event() ? AuditHandler.loggerEvent : AuditHandler.loggerActor;
+        switch (record.statusType()) {
+            case PROCESSING -> {
+                if (logger.isTraceEnabled()) {
+                    logger.trace(message(record, "[Start]"));
+                }
+            }
+            case PROCESSED -> logger.info(message(record, "[ End ]"));
+            case WARNING -> logger.warn(message(record, "[Warning]"));
+            case ERROR -> logger.error(message(record, "[Exception]"));
+        }
+    }
+
+    private String message(AuditRecord record, String prefix) {
+        Actor actor = record.actor();
+        var sb = new StringBuilder(prefix).append(' ');
+        if (actor.roleType().isAnonymous()) {
+            sb.append('[').append(actor.source()).append("] ");
+        } else if (actor.roleType().notSystem()) {
+            sb.append('[').append(actor.id()).append("] ");
+        }
+        sb.append(record.message());
+        if (record.elapsedMillis() != null) {
+            sb.append(" [").append(record.elapsedMillis()).append("ms]");
+        }
+        return sb.toString();
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public long spilled() {
+        return spilled.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("sample.audit.records", written, LongAdder::sum)
+                .tag("result", "written").register(registry);
+        FunctionCounter.builder("sample.audit.records", dropped, LongAdder::sum)
+                .tag("result", "dropped").register(registry);
+        FunctionCounter.builder("sample.audit.records", spilled, LongAdder::sum)
+                .tag("result", "spilled").register(registry);
+        FunctionCounter.builder("sample.audit.records", failed, LongAdder::sum)
+                .tag("result", "failed").register(registry);
+        Gauge.builder("sample.audit.queue.size", buffer, AuditRingBuffer::size).register(registry);
+    }
+
+    /** Stops the writer after it writes the enqueued records. */
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                if (spill != null) {
+                    spill.close();
+                }
+            } catch (IOException e) {
+                log.warn("Failure close audit spill file.", e);
+            }
+        }
+    }
+
+    /** The handling of the record when the buffer is full. */
+    public static enum BackpressurePolicy {
+        BLOCK,
+        DROP,
+        SPILL;
+    }
+
+}
@@ -0,0 +1,247 @@
+package sample.context.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The in-memory cache of the domain, which is aware of the transaction.
+ * <p>
+ * The change in a transaction is applied to the entry after the transaction
+ * commits, and the entry is evicted when it rolls back. While the change is
+ * pending, the entry is bypassed and read from the database, so the cache
+ * never exposes the uncommitted state even when the lock of the ID is
+ * released before the commit.
+ * low: The cache is local to the node, so it is refused with the lock shared
+ * between nodes ("sample.lock.backend=jdbc"). The entries are never expired.
+ */
+@Component
+public class DomainCache {
+    /** The cache which does not keep anything. */
+    public static final DomainCache DISABLED = new DomainCache(false);
+
+    private final boolean enabled;
+    private final Map<String, Region<?, ?>> regions = new ConcurrentHashMap<>();
+
+    public DomainCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Autowired
+    public DomainCache(
+            @Value("${sample.cache.enabled:false}") boolean enabled,
+            @Value("${sample.lock.backend:memory}") String lockBackend) {
+        this(enabled);
+        if (enabled && "jdbc".equals(lockBackend)) {
+            throw new IllegalStateException(
+                    "sample.cache.enabled is not supported with sample.lock.backend=jdbc (the cache is local to the node).");
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K, V> Region<K, V> region(String name) {
+        return (Region<K, V>) regions.computeIfAbsent(name, k -> new Region<>(enabled));
+    }
+
+    /** Clears all the regions. */
+    public void clear() {
+        regions.values().forEach(Region::clear);
+    }
+
+    /**
+     * The entries of the same kind.
+     * <p>
+     * The loaded entry is kept only when no change of the region completed
+     * during the load (generation), so the load never overwrites the newer
+     * change with the older state.
+     */
+    public static class Region<K, V> {
+        private final boolean enabled;
+        private final Map<K, V> entries = new ConcurrentHashMap<>();
+        /** The count of the transactions which changed the key. (guarded by this) */
+        private final Map<K, Integer> pending = new HashMap<>();
+        private long generation;
+
+        Region(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Optional<V> get(K key) {
+            return Optional.ofNullable(entries.get(key));
+        }
+
+        /** Returns the entry, or loads it and keeps it after the commit. */
+        public V get(K key, Function<K, V> loader) {
+            if (!enabled) {
+                return loader.apply(key);
+            }
+            V value;
+            long loadedAt;
+            synchronized (this) {
+                value = pending.containsKey(key) ? null : entries.get(key);
+                loadedAt = generation;
+            }
+            if (value != null) {
+                return value;
+            }
+            V loaded = loader.apply(key);
+            afterCommit(() -> {
+                synchronized (this) {
+                    if (loadedAt == generation && !pending.containsKey(key)) {
+                        entries.putIfAbsent(key, loaded);
+                    }
+                }
+            });
+            return loaded;
+        }
+
+        /**
+         * Updates the entry when it is kept. (write-through of the change)
+         * <p>
+         * In a transaction, the updaters of the key are merged and applied once
+         * after the commit. The entry changed by the other transaction at the same
+         * time is evicted instead, because their commit order is not known here.
+         */
+        public void update(K key, UnaryOperator<V> updater) {
+            if (!enabled) {
+                return;
+            }
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                synchronized (this) {
+                    entries.computeIfPresent(key, (k, v) -> updater.apply(v));
+                    generation++;
+                }
+                return;
+            }
+            changes().update(key, updater);
+        }
+
+        /** Evicts the entry. (in a transaction, it is bypassed until the completion) */
+        public void evict(K key) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                synchronized (this) {
+                    entries.remove(key);
+                    generation++;
+                }
+                return;
+            }
+            changes().evict(key);
+        }
+
+        public synchronized void clear() {
+            entries.clear();
+            generation++;
+        }
+
+        /** The changes of the current transaction. (registered on the first change) */
+        @SuppressWarnings("unchecked")
+        private TxChanges<K, V> changes() {
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                if (synchronization instanceof TxChanges<?, ?> changes && changes.region == this) {
+                    return (TxChanges<K, V>) changes;
+                }
+            }
+            var changes = new TxChanges<>(this);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+            return changes;
+        }
+
+        private synchronized void apply(Map<K, UnaryOperator<V>> changes) {
+            changes.forEach((key, updater) -> {
+                if (updater == null) {
+                    return; // evicted on the completion
+                }
+                if (pending.getOrDefault(key, 0) <= 1) {
+                    entries.computeIfPresent(key, (k, v) -> updater.apply(v));
+                } else {
+                    entries.remove(key);
+                }
+            });
+        }
+
+        private synchronized void hold(K key) {
+            pending.merge(key, 1, Integer::sum);
+        }
+
+        private synchronized void release(K key, boolean evict) {
+            if (evict) {
+                entries.remove(key);
+            }
+            pending.computeIfPresent(key, (k, v) -> v <= 1 ? null : v - 1);
+            generation++;
+        }
+
+        private void afterCommit(Runnable action) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                action.run();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * The changes of a region in one transaction.
+     * <p>
+     * The key is held once per transaction, so the pending count of the key is
+     * the count of the transactions which changed it.
+     */
+    private static class TxChanges<K, V> implements TransactionSynchronization {
+        private final Region<K, V> region;
+        /** The merged updater of each key. (null is the eviction) */
+        private final Map<K, UnaryOperator<V>> changes = new LinkedHashMap<>();
+
+        TxChanges(Region<K, V> region) {
+            this.region = region;
+        }
+
+        void update(K key, UnaryOperator<V> updater) {
+            if (!changes.containsKey(key)) {
+                region.hold(key);
+                changes.put(key, updater);
+                return;
+            }
+            UnaryOperator<V> prev = changes.get(key);
+            if (prev != null) {
+                changes.put(key, v -> updater.apply(prev.apply(v)));
+            }
+        }
+
+        void evict(K key) {
+            if (!changes.containsKey(key)) {
+                region.hold(key);
+            }
+            changes.put(key, null);
+        }
+
+        @Override
+        public void afterCommit() {
+            region.apply(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            changes.forEach((key, updater) -> region.release(key, status != STATUS_COMMITTED || updater == null));
+        }
+    }
+
+}
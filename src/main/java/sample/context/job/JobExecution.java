@@ -0,0 +1,52 @@
+package sample.context.job;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Builder;
+import sample.context.DomainEntity;
+
+/**
+ * The execution of the daily job. (one row per job and business day)
+ * <p>
+ * checkpoint is the last ID which the job committed, and the job resumes after
+ * it on the re-invocation.
+ */
+@Table("JOB_EXECUTION")
+@Builder
+public record JobExecution(
+        @Id String id,
+        String jobName,
+        LocalDate baseDay,
+        JobStatusType statusType,
+        String checkpoint,
+        long processed,
+        long failed,
+        String message,
+        LocalDateTime startDate,
+        LocalDateTime updateDate) implements DomainEntity {
+
+    public JobExecutionBuilder copyBuilder() {
+        return JobExecution.builder()
+                .id(this.id)
+                .jobName(this.jobName)
+                .baseDay(this.baseDay)
+                .statusType(this.statusType)
+                .checkpoint(this.checkpoint)
+                .processed(this.processed)
+                .failed(this.failed)
+                .message(this.message)
+                .startDate(this.startDate)
+                .updateDate(this.updateDate);
+    }
+
+    public static enum JobStatusType {
+        RUNNING,
+        COMPLETED,
+        FAILED;
+    }
+
+}
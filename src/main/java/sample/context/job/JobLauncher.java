@@ -0,0 +1,219 @@
+package sample.context.job;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.job.JobExecution.JobStatusType;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+
+/**
+ * Launches the daily job asynchronously with the execution state in
+ * JOB_EXECUTION.
+ * <p>
+ * A job runs once per business day. The re-invocation of a failed job (or of
+ * a job whose node died, detected by "sample.job.stale-timeout") resumes from
+ * the checkpoint, and the re-invocation of a completed or running job just
+ * returns the execution.
+ * <p>
+ * The job commits its progress with JobContext#checkpoint in the transaction
+ * of each chunk, so the checkpoint and the chunk are committed together.
+ * The running executions of this node also refresh UPDATE_DATE every third of
+ * the stale timeout, so a long chunk is not taken over as stale.
+ */
+@Component
+@Slf4j
+public class JobLauncher {
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final Duration staleTimeout;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService heartbeat;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public JobLauncher(
+            OrmRepository rep,
+            PlatformTransactionManager txm,
+            @Value("${sample.job.workers:2}") int workers,
+            @Value("${sample.job.stale-timeout:5m}") Duration staleTimeout) {
+        this.rep = rep;
+        this.txm = txm;
+        this.staleTimeout = staleTimeout;
+        this.executor = Executors.newFixedThreadPool(workers);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor();
+        long interval = Math.max(1, staleTimeout.toMillis() / 3);
+        this.heartbeat.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits the job of the business day.
+     *
+     * @return the execution ID (poll it with #load)
+     */
+    public String submit(String jobName, Consumer<JobContext> job) {
+        Optional<JobExecution> started = start(jobName);
+        if (started.isEmpty()) {
+            return find(jobName).map(JobExecution::id).orElseThrow();
+        }
+        JobExecution execution = started.get();
+        Actor actor = ActorSession.actor();
+        running.add(execution.id());
+        executor.submit(() -> {
+            ActorSession.bind(actor);
+            JobStatusType statusType = JobStatusType.COMPLETED;
+            String message = null;
+            try {
+                job.accept(new JobContext(execution.id(), execution.checkpoint()));
+            } catch (Exception e) {
+                log.error("[" + execution.id() + "] Failure job " + jobName + ".", e);
+                statusType = JobStatusType.FAILED;
+                message = e.getMessage();
+            } finally {
+                running.remove(execution.id());
+                ActorSession.unbind();
+            }
+            // It is still RUNNING until here, so the re-submission waits for it.
+            finish(execution.id(), statusType, message);
+        });
+        return execution.id();
+    }
+
+    public JobExecution load(String id) {
+        return TxTemplate.of(txm).readOnly().tx(() -> rep.load(JobExecution.class, id));
+    }
+
+    private Optional<JobExecution> find(String jobName) {
+        return TxTemplate.of(txm).readOnly().tx(() -> rep.tmpl().get(JobExecution.class, criteria -> criteria
+                .and("jobName").is(jobName)
+                .and("baseDay").is(rep.dh().time().day())));
+    }
+
+    /** Returns the execution when this node takes the run. */
+    private Optional<JobExecution> start(String jobName) {
+        try {
+            return TxTemplate.of(txm).tx(() -> {
+                var now = rep.dh().time().tp();
+                Optional<JobExecution> current = rep.tmpl().get(JobExecution.class, criteria -> criteria
+                        .and("jobName").is(jobName)
+                        .and("baseDay").is(now.day()));
+                if (current.isEmpty()) {
+                    return Optional.of(rep.save(JobExecution.builder()
+                            .id(rep.dh().uid().generate(JobExecution.class.getSimpleName()))
+                            .jobName(jobName)
+                            .baseDay(now.day())
+                            .statusType(JobStatusType.RUNNING)
+                            .startDate(now.date())
+                            .updateDate(now.date())
+                            .build()));
+                }
+                JobExecution execution = current.get();
+                if (execution.statusType() == JobStatusType.COMPLETED || running.contains(execution.id())
+                        || (execution.statusType() == JobStatusType.RUNNING
+                                && now.date().isBefore(execution.updateDate().plus(staleTimeout)))) {
+                    return Optional.empty();
+                }
+                // Resume the failed (or stale) execution, unless the other node took it.
+                int updated = rep.tmplJdbc().update(
+                        "UPDATE job_execution SET status_type = :status, message = NULL, update_date = :now"
+                                + " WHERE id = :id AND update_date = :updateDate",
+                        Map.of("status", JobStatusType.RUNNING.name(), "now", now.date(),
+                                "id", execution.id(), "updateDate", execution.updateDate()));
+                return updated == 1 ? Optional.of(execution) : Optional.empty();
+            });
+        } catch (DuplicateKeyException e) {
+            return Optional.empty(); // started by the other node
+        }
+    }
+
+    private void finish(String id, JobStatusType statusType, String message) {
+        TxTemplate.of(txm).tx(() -> {
+            rep.tmplJdbc().update(
+                    "UPDATE job_execution SET status_type = :status, message = :message, update_date = :now"
+                            + " WHERE id = :id",
+                    new MapSqlParameterSource()
+                            .addValue("status", statusType.name())
+                            .addValue("message", message != null && 256 < message.length() ? message.substring(0, 256) : message)
+                            .addValue("now", rep.dh().time().date())
+                            .addValue("id", id));
+        });
+    }
+
+    /** Refreshes UPDATE_DATE of the executions running on this node. */
+    private void heartbeat() {
+        if (running.isEmpty()) {
+            return;
+        }
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                rep.tmplJdbc().update(
+                        "UPDATE job_execution SET update_date = :now WHERE id IN (:ids) AND status_type = :status",
+                        Map.of("now", rep.dh().time().date(), "ids", List.copyOf(running),
+                                "status", JobStatusType.RUNNING.name()));
+            });
+        } catch (Exception e) {
+            // low: the next heartbeat retries it (the chunk checkpoint also refreshes it)
+            log.warn("Failure job heartbeat.", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeat.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * The context of the running job.
+     */
+    public class JobContext {
+        private final String id;
+        private String checkpoint;
+
+        JobContext(String id, String checkpoint) {
+            this.id = id;
+            this.checkpoint = checkpoint;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        /** Returns the last committed ID. (null on the first run) */
+        public String checkpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Records the progress of the chunk.
+         * Call it in the transaction of the chunk, so that they commit together.
+         */
+        public void checkpoint(String lastId, long processed, long failed) {
+            rep.tmplJdbc().update(
+                    "UPDATE job_execution SET checkpoint = :checkpoint, processed = processed + :processed,"
+                            + " failed = failed + :failed, update_date = :now WHERE id = :id",
+                    Map.of("checkpoint", lastId, "processed", processed, "failed", failed,
+                            "now", rep.dh().time().date(), "id", id));
+            this.checkpoint = lastId;
+        }
+    }
+
+}
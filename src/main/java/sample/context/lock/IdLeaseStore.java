@@ -0,0 +1,31 @@
+package sample.context.lock;
+
+import java.time.Duration;
+
+/**
+ * The lease store which shares the WRITE lock of the ID between nodes.
+ * <p>
+ * IdLockHandler takes a lease only after it holds the local lock of the ID,
+ * so only one thread per node asks the store for the same ID.
+ */
+public interface IdLeaseStore {
+
+    /**
+     * Tries to take the lease of the ID without waiting.
+     * (an expired lease of another node can be taken over)
+     *
+     * @return true when the lease was taken
+     */
+    boolean tryAcquire(String id, Duration lease);
+
+    /**
+     * Extends the lease of the ID held by this node.
+     *
+     * @return false when the lease is no longer held by this node
+     */
+    boolean renew(String id, Duration lease);
+
+    /** Releases the lease of the ID held by this node. */
+    void release(String id);
+
+}
@@ -1,13 +1,39 @@
 package sample.context.lock;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.ErrorKeys;
 import sample.context.InvocationException;
+import sample.context.ValidationException;
 
 /**
  * The lock of the ID unit.
@@ -15,18 +41,109 @@ import sample.context.InvocationException;
  * low: You take the pessimistic lock by "for update" demand on a lock table of
  * DB,
  * but usually do it to memory lock because it is a sample.
+ * <p>
+ * The lock table is selected with "sample.lock.mode". (see LockMode)
+ * <p>
+ * The wait time and the hold time are recorded for each LockType as
+ * "sample.lock.wait" / "sample.lock.hold", and the timeouts as
+ * "sample.lock.timeout".
+ * <p>
+ * When you lock multiple IDs, use the collection API which acquires them in a
+ * canonical order so that crossed lock orders cannot deadlock.
+ * <p>
+ * When IdLeaseStore is available ("sample.lock.backend=jdbc"), the WRITE lock
+ * also takes the lease of the ID after the local lock, so that it is shared
+ * between nodes. The local lock coalesces the waiters of the node, so only one
+ * thread per node polls the store for the same ID.
+ * The held leases are renewed every third of "sample.lock.lease". When a lease
+ * is lost (it expired and the other node took it), the holder fails with
+ * ErrorKeys.LockLost: TxTemplate checks it before the commit, and #unlock in a
+ * transaction throws it.
+ * low: The READ lock is local only.
+ * <p>
+ * The locks use java.util.concurrent (no monitor), so waiting for them does not
+ * pin a virtual thread. ("spring.threads.virtual.enabled")
  */
 @Component
-public class IdLockHandler {
+@Slf4j
+public class IdLockHandler implements MeterBinder {
+    public static final int DEFAULT_STRIPES = 1024;
 
-    private ConcurrentMap<Object, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
+    /** The canonical order of the lock keys. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final Comparator<Object> KEY_ORDER = (a, b) -> {
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        int c = a.getClass().getName().compareTo(b.getClass().getName());
+        return c != 0 ? c : String.valueOf(a).compareTo(String.valueOf(b));
+    };
+
+    private final IdLockTable lockTable;
+    private final Optional<IdLeaseStore> leaseStore;
+    private final Duration lease;
+    /** The lease hold counts of the current thread. (for reentrant WRITE lock) */
+    private final ThreadLocal<Map<Object, Integer>> leaseHolds = ThreadLocal.withInitial(HashMap::new);
+    /** The leases held on this node. */
+    private final ConcurrentMap<Object, HeldLease> heldLeases = new ConcurrentHashMap<>();
+    private final Optional<ScheduledExecutorService> renewer;
+    private volatile LockMetrics metrics = LockMetrics.of(new SimpleMeterRegistry());
+
+    public IdLockHandler() {
+        this(LockMode.REF_COUNT, DEFAULT_STRIPES);
+    }
+
+    public IdLockHandler(LockMode mode, int stripes) {
+        this(mode, stripes, Optional.empty(), Duration.ofSeconds(30));
+    }
+
+    public IdLockHandler(LockMode mode, int stripes, Optional<IdLeaseStore> leaseStore, Duration lease) {
+        this.lockTable = IdLockTable.of(mode, stripes);
+        this.leaseStore = leaseStore;
+        this.lease = lease;
+        this.renewer = leaseStore.map(store -> {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "id-lease-renewer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, lease.toMillis() / 3);
+            executor.scheduleWithFixedDelay(this::renewLeases, interval, interval, TimeUnit.MILLISECONDS);
+            return executor;
+        });
+    }
+
+    @Autowired
+    public IdLockHandler(
+            @Value("${sample.lock.mode:REF_COUNT}") LockMode mode,
+            @Value("${sample.lock.stripes:1024}") int stripes,
+            ObjectProvider<IdLeaseStore> leaseStore,
+            @Value("${sample.lock.lease:30s}") Duration lease) {
+        this(mode, stripes, Optional.ofNullable(leaseStore.getIfAvailable()), lease);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.metrics = LockMetrics.of(registry);
+    }
 
     public <T> T call(Object id, LockType lockType, final Callable<T> callable) {
-        if (lockType.isWrite()) {
-            this.writeLock(id);
-        } else {
-            this.readLock(id);
-        }
+        return this.call(id, lockType, null, callable);
+    }
+
+    public void call(Object id, LockType lockType, final Runnable runnable) {
+        this.call(id, lockType, null, runnable);
+    }
+
+    /**
+     * Calls it while holding the lock of the ID.
+     * <p>
+     * When the lock cannot be acquired within the timeout, ValidationException
+     * (ErrorKeys.LockTimeout) is thrown. (null timeout waits forever)
+     */
+    public <T> T call(Object id, LockType lockType, Duration timeout, final Callable<T> callable) {
+        this.lock(id, lockType, timeout);
+        long locked = System.nanoTime();
         try {
             return callable.call();
         } catch (RuntimeException e) {
@@ -35,32 +152,254 @@ public class IdLockHandler {
             throw new InvocationException("error.Exception", e);
         } finally {
             this.unlock(id);
+            if (id != null) {
+                this.metrics.holdTimer(lockType).record(System.nanoTime() - locked, TimeUnit.NANOSECONDS);
+            }
         }
     }
 
-    public void call(Object id, LockType lockType, final Runnable runnable) {
-        this.call(id, lockType, () -> {
+    public void call(Object id, LockType lockType, Duration timeout, final Runnable runnable) {
+        this.call(id, lockType, timeout, () -> {
             runnable.run();
             return null;
         });
     }
 
-    private void writeLock(final Object id) {
-        if (id == null) {
-            return;
+    /**
+     * Calls it while holding the locks of all IDs.
+     * <p>
+     * The locks are acquired in a canonical order within the timeout (as a whole),
+     * and when it fails, the acquired locks are released and ValidationException
+     * (ErrorKeys.LockTimeout) is thrown.
+     */
+    public <T> T call(final Collection<IdLockPair> pairs, Duration timeout, final Callable<T> callable) {
+        List<IdLockPair> locked = this.lockAll(pairs, timeout);
+        long start = System.nanoTime();
+        try {
+            return callable.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvocationException("error.Exception", e);
+        } finally {
+            this.unlockAll(locked);
+            long hold = System.nanoTime() - start;
+            locked.forEach(pair -> this.metrics.holdTimer(pair.lockType()).record(hold, TimeUnit.NANOSECONDS));
         }
-        this.idLock(id).writeLock().lock();
     }
 
-    private ReentrantReadWriteLock idLock(final Object id) {
-        return lockMap.computeIfAbsent(id, v -> new ReentrantReadWriteLock());
+    public void call(final Collection<IdLockPair> pairs, Duration timeout, final Runnable runnable) {
+        this.call(pairs, timeout, () -> {
+            runnable.run();
+            return null;
+        });
     }
 
-    public void readLock(final Object id) {
+    /**
+     * Acquires the locks of all IDs in a canonical order.
+     * <p>
+     * IDs sharing the same lock instance are acquired with the strongest LockType
+     * of them.
+     * A thread which already holds a READ lock of the instance fails on its
+     * WRITE lock. (see #lock)
+     *
+     * @return the acquired locks (pass it to unlockAll)
+     */
+    public List<IdLockPair> lockAll(final Collection<IdLockPair> pairs, Duration timeout) {
+        Map<Object, LockType> keyTypes = new HashMap<>();
+        Map<Object, Object> idKeys = new LinkedHashMap<>();
+        for (IdLockPair pair : pairs) {
+            if (pair.id() == null) {
+                continue;
+            }
+            Object key = this.lockTable.key(pair.id());
+            keyTypes.merge(key, pair.lockType(), (prev, next) -> prev.isWrite() ? prev : next);
+            idKeys.put(pair.id(), key);
+        }
+        List<IdLockPair> normalized = new ArrayList<>(idKeys.size());
+        idKeys.forEach((id, key) -> normalized.add(new IdLockPair(id, keyTypes.get(key))));
+        Comparator<IdLockPair> keyOrder = Comparator.comparing(pair -> this.lockTable.key(pair.id()), KEY_ORDER);
+        normalized.sort(keyOrder.thenComparing(IdLockPair::id, KEY_ORDER));
+
+        long deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : 0;
+        List<IdLockPair> locked = new ArrayList<>(normalized.size());
+        try {
+            for (IdLockPair pair : normalized) {
+                Duration remaining = timeout != null
+                        ? Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))
+                        : null;
+                this.lock(pair.id(), pair.lockType(), remaining);
+                locked.add(pair);
+            }
+        } catch (RuntimeException e) {
+            this.unlockAll(locked);
+            throw e;
+        }
+        return locked;
+    }
+
+    /** Releases the locks acquired by lockAll. (in reverse order) */
+    public void unlockAll(final List<IdLockPair> locked) {
+        for (int i = locked.size() - 1; 0 <= i; i--) {
+            this.unlock(locked.get(i).id());
+        }
+    }
+
+    /**
+     * Acquires the lock of the ID.
+     * (null timeout waits forever)
+     * <p>
+     * The WRITE lock requested by the thread which holds the READ lock of the same
+     * lock instance (the same ID, or the same stripe in STRIPED mode) fails with
+     * IllegalStateException instead of the deadlock.
+     */
+    public void lock(final Object id, LockType lockType, Duration timeout) {
         if (id == null) {
             return;
         }
-        this.idLock(id).readLock().lock();
+        long start = System.nanoTime();
+        ReentrantReadWriteLock idLock = this.lockTable.acquire(id);
+        if (lockType.isWrite() && 0 < idLock.getReadHoldCount() && !idLock.isWriteLockedByCurrentThread()) {
+            // ReentrantReadWriteLock can not upgrade the READ lock, so it waits forever.
+            this.lockTable.release(id);
+            throw new IllegalStateException(
+                    "The WRITE lock of the ID is requested while holding the READ lock of the same instance. [" + id
+                            + "]");
+        }
+        Lock lock = lockType.isWrite() ? idLock.writeLock() : idLock.readLock();
+        boolean locked = false;
+        try {
+            if (timeout == null) {
+                lock.lock();
+                locked = true;
+            } else {
+                locked = lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (locked && lockType.isWrite() && this.leaseStore.isPresent()) {
+                boolean leased = false;
+                try {
+                    leased = this.acquireLease(id, start, timeout);
+                } finally {
+                    if (!leased) {
+                        lock.unlock();
+                        locked = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvocationException("error.Exception", e);
+        } finally {
+            this.metrics.waitTimer(lockType).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!locked) {
+                this.lockTable.release(id);
+            }
+        }
+        if (!locked) {
+            this.metrics.timeoutCounter(lockType).increment();
+            throw ValidationException.of(ErrorKeys.LockTimeout, id.toString());
+        }
+    }
+
+    /**
+     * Acquires the lock of the ID without waiting.
+     *
+     * @return true when the lock was acquired
+     */
+    public boolean tryLock(final Object id, LockType lockType) {
+        if (id == null) {
+            return true;
+        }
+        ReentrantReadWriteLock idLock = this.lockTable.acquire(id);
+        Lock lock = lockType.isWrite() ? idLock.writeLock() : idLock.readLock();
+        if (lock.tryLock()) {
+            if (lockType.isRead() || this.leaseStore.isEmpty() || this.tryLease(id)) {
+                return true;
+            }
+            lock.unlock();
+        }
+        this.lockTable.release(id);
+        return false;
+    }
+
+    private boolean acquireLease(Object id, long start, Duration timeout) throws InterruptedException {
+        long backoffMillis = 10;
+        while (!this.tryLease(id)) {
+            long remaining = timeout != null ? start + timeout.toNanos() - System.nanoTime() : Long.MAX_VALUE;
+            if (remaining <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(backoffMillis, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+            backoffMillis = Math.min(backoffMillis * 2, 200);
+        }
+        return true;
+    }
+
+    private boolean tryLease(Object id) {
+        Map<Object, Integer> holds = this.leaseHolds.get();
+        Integer count = holds.get(id);
+        if (count != null) {
+            holds.put(id, count + 1);
+            return true;
+        }
+        if (!this.leaseStore.get().tryAcquire(String.valueOf(id), this.lease)) {
+            return false;
+        }
+        holds.put(id, 1);
+        this.heldLeases.put(id, new HeldLease());
+        return true;
+    }
+
+    /** @return true when the released lease had been lost */
+    private boolean releaseLease(Object id) {
+        if (this.leaseStore.isEmpty()) {
+            return false;
+        }
+        Map<Object, Integer> holds = this.leaseHolds.get();
+        Integer count = holds.get(id);
+        if (count == null) {
+            return false;
+        }
+        if (1 < count) {
+            holds.put(id, count - 1);
+            return false;
+        }
+        holds.remove(id);
+        HeldLease held = this.heldLeases.remove(id);
+        this.leaseStore.get().release(String.valueOf(id));
+        return held != null && held.lost;
+    }
+
+    private void renewLeases() {
+        this.heldLeases.forEach((id, held) -> {
+            if (held.lost) {
+                return;
+            }
+            try {
+                if (!this.leaseStore.get().renew(String.valueOf(id), this.lease)) {
+                    held.lost = true;
+                    log.warn("Lost the lease of the ID lock " + id + ".");
+                }
+            } catch (Exception e) {
+                // low: the next renewal retries it before the lease expires
+                log.warn("Failure renew the lease of the ID lock " + id + ".", e);
+            }
+        });
+    }
+
+    /**
+     * Verifies that the lease of the WRITE lock held by this thread is not lost.
+     * (call it before the commit of the work under the lock)
+     */
+    public void verifyLease(final Object id) {
+        HeldLease held = id != null ? this.heldLeases.get(id) : null;
+        if (held != null && held.lost && this.leaseHolds.get().containsKey(id)) {
+            throw ValidationException.of(ErrorKeys.LockLost, id.toString());
+        }
+    }
+
+    public void readLock(final Object id) {
+        this.lock(id, LockType.READ, null);
     }
 
     public void unlock(final Object id) {
@@ -68,12 +407,36 @@ public class IdLockHandler {
             return;
         }
 
-        ReentrantReadWriteLock idLock = idLock(id);
+        ReentrantReadWriteLock idLock = this.lockTable.current(id);
+        boolean lost = false;
         if (idLock.isWriteLockedByCurrentThread()) {
-            idLock.writeLock().unlock();
+            try {
+                lost = this.releaseLease(id);
+            } finally {
+                idLock.writeLock().unlock();
+            }
         } else {
             idLock.readLock().unlock();
         }
+        this.lockTable.release(id);
+        if (lost && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw ValidationException.of(ErrorKeys.LockLost, id.toString());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.renewer.ifPresent(ScheduledExecutorService::shutdown);
+    }
+
+    /** The lock table types. */
+    public static enum LockMode {
+        /** Keeps a lock per ID. (it is never removed) */
+        MAP,
+        /** Shares a fixed number of locks hashed from the ID. */
+        STRIPED,
+        /** Keeps a lock per ID only while it is in use. */
+        REF_COUNT;
     }
 
     public static enum LockType {
@@ -92,4 +455,50 @@ public class IdLockHandler {
     public static record IdLockPair(Object id, LockType lockType) {
     }
 
+    /** The lease held on this node. (lost is set by the renewal) */
+    private static class HeldLease {
+        private volatile boolean lost;
+    }
+
+    /** The meters of each LockType. (indexed by ordinal) */
+    private static record LockMetrics(Timer[] waits, Timer[] holds, Counter[] timeouts) {
+
+        Timer waitTimer(LockType lockType) {
+            return waits[lockType.ordinal()];
+        }
+
+        Timer holdTimer(LockType lockType) {
+            return holds[lockType.ordinal()];
+        }
+
+        Counter timeoutCounter(LockType lockType) {
+            return timeouts[lockType.ordinal()];
+        }
+
+        static LockMetrics of(MeterRegistry registry) {
+            LockType[] types = LockType.values();
+            var waits = new Timer[types.length];
+            var holds = new Timer[types.length];
+            var timeouts = new Counter[types.length];
+            for (LockType type : types) {
+                waits[type.ordinal()] = timer(registry, "sample.lock.wait", "Time to acquire the ID lock.", type);
+                holds[type.ordinal()] = timer(registry, "sample.lock.hold", "Time holding the ID lock.", type);
+                timeouts[type.ordinal()] = Counter.builder("sample.lock.timeout")
+                        .description("Count of the ID lock timeout.")
+                        .tag("type", type.name())
+                        .register(registry);
+            }
+            return new LockMetrics(waits, holds, timeouts);
+        }
+
+        private static Timer timer(MeterRegistry registry, String name, String description, LockType type) {
+            return Timer.builder(name)
+                    .description(description)
+                    .tag("type", type.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
 }
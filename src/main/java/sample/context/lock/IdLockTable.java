@@ -0,0 +1,165 @@
+package sample.context.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sample.context.lock.IdLockHandler.LockMode;
+
+/**
+ * The lock table which resolves the lock instance of the ID unit.
+ * <p>
+ * Call acquire before locking, and call release after unlocking the instance
+ * returned by current.
+ */
+public interface IdLockTable {
+
+    /**
+     * Returns the key which identifies the lock instance of the ID.
+     * (IDs of the same key share the lock instance)
+     */
+    default Object key(Object id) {
+        return id;
+    }
+
+    /** Returns the lock instance of the ID and keeps it while in use. */
+    ReentrantReadWriteLock acquire(Object id);
+
+    /** Returns the lock instance of the ID which is in use. */
+    ReentrantReadWriteLock current(Object id);
+
+    /** Releases the lock instance of the ID. (call it after unlocking) */
+    void release(Object id);
+
+    public static IdLockTable of(LockMode mode, int stripes) {
+        return switch (mode) {
+            case MAP -> new MapLockTable();
+            case STRIPED -> new StripedLockTable(stripes);
+            case REF_COUNT -> new RefCountLockTable();
+        };
+    }
+
+    /**
+     * Keeps a lock per ID.
+     * low: Entries are never removed, so the table grows with the number of IDs.
+     */
+    public static class MapLockTable implements IdLockTable {
+        private final ConcurrentMap<Object, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
+
+        @Override
+        public ReentrantReadWriteLock acquire(Object id) {
+            return lockMap.computeIfAbsent(id, v -> new ReentrantReadWriteLock());
+        }
+
+        @Override
+        public ReentrantReadWriteLock current(Object id) {
+            return acquire(id);
+        }
+
+        @Override
+        public void release(Object id) {
+            // nothing.
+        }
+    }
+
+    /**
+     * Shares a fixed number of locks hashed from the ID.
+     * <p>
+     * Memory is constant, but different IDs may wait for each other.
+     * low: A thread which holds a READ lock can not take a WRITE lock of another
+     * ID in the same stripe. (IdLockHandler#lock fails on it)
+     */
+    public static class StripedLockTable implements IdLockTable {
+        private final ReentrantReadWriteLock[] stripes;
+        private final int mask;
+
+        public StripedLockTable(int stripes) {
+            int size = 1;
+            while (size < Math.max(1, stripes)) {
+                size <<= 1;
+            }
+            this.stripes = new ReentrantReadWriteLock[size];
+            for (int i = 0; i < size; i++) {
+                this.stripes[i] = new ReentrantReadWriteLock();
+            }
+            this.mask = size - 1;
+        }
+
+        public int index(Object id) {
+            int h = id.hashCode();
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        @Override
+        public Object key(Object id) {
+            return index(id);
+        }
+
+        @Override
+        public ReentrantReadWriteLock acquire(Object id) {
+            return stripes[index(id)];
+        }
+
+        @Override
+        public ReentrantReadWriteLock current(Object id) {
+            return stripes[index(id)];
+        }
+
+        @Override
+        public void release(Object id) {
+            // nothing.
+        }
+    }
+
+    /**
+     * Keeps a lock per ID only while it is acquired, and evicts idle locks.
+     */
+    public static class RefCountLockTable implements IdLockTable {
+        private final ConcurrentMap<Object, RefCountLock> lockMap = new ConcurrentHashMap<>();
+
+        @Override
+        public ReentrantReadWriteLock acquire(Object id) {
+            return lockMap.compute(id, (k, v) -> v == null ? new RefCountLock() : v.retain()).lock();
+        }
+
+        @Override
+        public ReentrantReadWriteLock current(Object id) {
+            RefCountLock v = lockMap.get(id);
+            if (v == null) {
+                throw new IllegalMonitorStateException("The lock is not acquired. [" + id + "]");
+            }
+            return v.lock();
+        }
+
+        @Override
+        public void release(Object id) {
+            lockMap.computeIfPresent(id, (k, v) -> v.release() ? null : v);
+        }
+
+        /** Returns the number of locks in use. */
+        public int size() {
+            return lockMap.size();
+        }
+    }
+
+    /** The reference counted lock. (it is updated only in the map operation) */
+    static class RefCountLock {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int refs = 1;
+
+        ReentrantReadWriteLock lock() {
+            return lock;
+        }
+
+        RefCountLock retain() {
+            refs++;
+            return this;
+        }
+
+        /** Returns true when it is no longer referenced. */
+        boolean release() {
+            return --refs <= 0;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package sample.context.lock;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The lease store on the lock table of DB. (enabled by
+ * "sample.lock.backend=jdbc")
+ * <p>
+ * A lease is the row of ID_LOCK, and it is taken by the conditional update
+ * which takes the row lock (equivalent to "select for update") in a separate
+ * transaction.
+ * The holder renews the lease while it holds the lock. (see IdLockHandler)
+ * low: The expiry uses the clock of each node, so keep the node clocks in sync.
+ */
+@Component
+@ConditionalOnProperty(name = "sample.lock.backend", havingValue = "jdbc")
+public class JdbcIdLeaseStore implements IdLeaseStore {
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final String owner;
+
+    public JdbcIdLeaseStore(
+            DataSource dataSource,
+            PlatformTransactionManager txm,
+            @Value("${sample.lock.node:${random.uuid}}") String owner) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(txm);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.owner = owner;
+    }
+
+    @Override
+    public boolean tryAcquire(String id, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp expireDate = Timestamp.valueOf(now.plus(lease));
+        try {
+            return Boolean.TRUE.equals(tx.execute(status -> {
+                int updated = jdbc.update(
+                        "UPDATE id_lock SET owner = ?, expire_date = ?"
+                                + " WHERE id = ? AND (owner IS NULL OR owner = ? OR expire_date < ?)",
+                        owner, expireDate, id, owner, Timestamp.valueOf(now));
+                if (updated == 1) {
+                    return true;
+                }
+                if (0 < jdbc.queryForObject("SELECT COUNT(*) FROM id_lock WHERE id = ?", Integer.class, id)) {
+                    return false;
+                }
+                return jdbc.update("INSERT INTO id_lock (id, owner, expire_date) VALUES (?, ?, ?)",
+                        id, owner, expireDate) == 1;
+            }));
+        } catch (DuplicateKeyException e) {
+            // The other node inserted the row first.
+            return false;
+        }
+    }
+
+    @Override
+    public boolean renew(String id, Duration lease) {
+        Timestamp expireDate = Timestamp.valueOf(LocalDateTime.now().plus(lease));
+        return Boolean.TRUE.equals(tx.execute(status -> jdbc.update(
+                "UPDATE id_lock SET expire_date = ? WHERE id = ? AND owner = ?", expireDate, id, owner) == 1));
+    }
+
+    @Override
+    public void release(String id) {
+        tx.executeWithoutResult(status -> {
+            jdbc.update("UPDATE id_lock SET owner = NULL, expire_date = NULL WHERE id = ? AND owner = ?",
+                    id, owner);
+        });
+    }
+
+}
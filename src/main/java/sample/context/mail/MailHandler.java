@@ -1,10 +1,33 @@
 package sample.context.mail;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,25 +36,184 @@ import lombok.extern.slf4j.Slf4j;
  * low: In the sample, only the interface for sending mail is created. In
  * practice, it
  * also supports receiving emails such as POP3/IMAP.
+ * <p>
+ * #sendAsync enqueues the mail into the bounded queue
+ * ("sample.mail.queue-capacity") of the worker pool ("sample.mail.workers").
+ * When "sample.mail.coalesce-window" is positive, the mails to the same
+ * address within the window are sent as one digest mail.
  */
 @Component
 @Slf4j
-public class MailHandler {
-    @Value("${sample.mail.enabled:true}")
-    private Boolean enable;
+public class MailHandler implements MeterBinder {
+    private final boolean enable;
+    private final int workers;
+    private final int queueCapacity;
+    private final Duration coalesceWindow;
+    /** The digests waiting for the window of each address. */
+    private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private volatile Timer latency = latency(new SimpleMeterRegistry());
+    private ThreadPoolExecutor workerPool;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public MailHandler(
+            @Value("${sample.mail.enabled:true}") boolean enable,
+            @Value("${sample.mail.workers:4}") int workers,
+            @Value("${sample.mail.queue-capacity:10000}") int queueCapacity,
+            @Value("${sample.mail.coalesce-window:0s}") Duration coalesceWindow) {
+        this.enable = enable;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    @PostConstruct
+    public void start() {
+        this.workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemon("mail-worker-"));
+        if (coalescing()) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("mail-coalesce-"));
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        var count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private boolean coalescing() {
+        return !coalesceWindow.isZero() && !coalesceWindow.isNegative();
+    }
 
     public MailHandler send(final SendMail mail) {
         if (!enable) {
             log.info("Sent a dummy email. [" + mail.subject + "]");
             return this;
         }
-        // low: There should be a lot of overhead in cooperation with external
-        // resources, so it should be done asynchronously.
         // low: Send the contents of the substitution mapping of bodyArgs to body by
-        // JavaMail etc.
+        // JavaMail etc. Each worker should keep its own SMTP connection (Transport)
+        // open across the mails, since the workers send them one by one.
         return this;
     }
 
+    /**
+     * Sends the mail in the worker pool.
+     * <p>
+     * The future completes when the mail (or the digest which contains it) is
+     * sent, and completes exceptionally when it fails or the queue is full.
+     */
+    public CompletableFuture<Void> sendAsync(final SendMail mail) {
+        queued.increment();
+        var future = new CompletableFuture<Void>();
+        if (!coalescing()) {
+            submit(new Digest(System.nanoTime(), mail, future));
+            return future;
+        }
+        digests.compute(mail.address(), (address, digest) -> {
+            if (digest == null) {
+                scheduler.schedule(() -> flush(address), coalesceWindow.toNanos(), TimeUnit.NANOSECONDS);
+                return new Digest(System.nanoTime(), mail, future);
+            }
+            digest.add(mail, future);
+            return digest;
+        });
+        return future;
+    }
+
+    private void flush(String address) {
+        Digest digest = digests.remove(address);
+        if (digest != null) {
+            submit(digest);
+        }
+    }
+
+    private void submit(Digest digest) {
+        try {
+            workerPool.execute(() -> {
+                try {
+                    send(digest.mail());
+                    delivered.increment();
+                    latency.record(System.nanoTime() - digest.start, TimeUnit.NANOSECONDS);
+                    sent.add(digest.mails.size());
+                    digest.futures.forEach(f -> f.complete(null));
+                } catch (Exception e) {
+                    fail(digest, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(digest, e);
+        }
+    }
+
+    private void fail(Digest digest, Exception e) {
+        failed.add(digest.mails.size());
+        digest.futures.forEach(f -> f.completeExceptionally(e));
+    }
+
+    /** Returns the count of the mails which were sent after the coalescing. */
+    public long delivered() {
+        return delivered.sum();
+    }
+
+    public long queued() {
+        return queued.sum();
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("sample.mail.notifications", queued, LongAdder::sum)
+                .tag("result", "queued").register(registry);
+        FunctionCounter.builder("sample.mail.notifications", sent, LongAdder::sum)
+                .tag("result", "sent").register(registry);
+        FunctionCounter.builder("sample.mail.notifications", failed, LongAdder::sum)
+                .tag("result", "failed").register(registry);
+        FunctionCounter.builder("sample.mail.delivered", delivered, LongAdder::sum).register(registry);
+        Gauge.builder("sample.mail.queue.size", this, h -> h.workerPool != null ? h.workerPool.getQueue().size() : 0)
+                .register(registry);
+        this.latency = latency(registry);
+    }
+
+    private static Timer latency(MeterRegistry registry) {
+        return Timer.builder("sample.mail.latency")
+                .description("Time from the enqueue to the sending of the mail.")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Sends the waiting digests and stops the workers after the queued mails. */
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            List.copyOf(digests.keySet()).forEach(this::flush);
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
+            try {
+                workerPool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /** Mail sending parameters. */
     @Builder
     public static record SendMail(
@@ -39,6 +221,46 @@ public class MailHandler {
             String subject,
             String body,
             Map<String, String> bodyArgs) {
+
+        /** Returns the body whose {key} is replaced by bodyArgs. */
+        public String render() {
+            String v = body;
+            if (bodyArgs != null) {
+                for (var arg : bodyArgs.entrySet()) {
+                    v = v.replace("{" + arg.getKey() + "}", arg.getValue());
+                }
+            }
+            return v;
+        }
+    }
+
+    /** The mails to one address, which are sent as one mail. */
+    private static class Digest {
+        private final long start;
+        private final List<SendMail> mails = new ArrayList<>(1);
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+        Digest(long start, SendMail mail, CompletableFuture<Void> future) {
+            this.start = start;
+            add(mail, future);
+        }
+
+        void add(SendMail mail, CompletableFuture<Void> future) {
+            mails.add(mail);
+            futures.add(future);
+        }
+
+        SendMail mail() {
+            if (mails.size() == 1) {
+                return mails.get(0);
+            }
+            var body = new StringBuilder();
+            for (SendMail mail : mails) {
+                body.append(0 < body.length() ? "\n\n" : "").append(mail.subject()).append('\n').append(mail.render());
+            }
+            return new SendMail(mails.get(0).address(),
+                    "[" + mails.size() + " notifications] " + mails.get(0).subject(), body.toString(), Map.of());
+        }
     }
 
 }
@@ -0,0 +1,74 @@
+package sample.context.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The mail template of "{name}" placeholders, which is parsed once.
+ * <p>
+ * The template is compiled into the literal and the placeholder segments, so
+ * the rendering only appends them into the reusable buffer of the thread. The
+ * placeholder without the argument is rendered as it is.
+ */
+public final class MailTemplate {
+    private static final int MAX_BUFFER = 8192;
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /** The literals around the names. (names.length + 1) */
+    private final String[] literals;
+    private final String[] names;
+
+    private MailTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+    }
+
+    public static MailTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int from = 0;
+        int literal = 0;
+        while (true) {
+            int open = template.indexOf('{', from);
+            int close = open < 0 ? -1 : template.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            literals.add(template.substring(literal, open));
+            names.add(template.substring(open + 1, close));
+            literal = from = close + 1;
+        }
+        literals.add(template.substring(literal));
+        return new MailTemplate(literals.toArray(String[]::new), names.toArray(String[]::new));
+    }
+
+    public String render(Map<String, String> args) {
+        return render(args::get);
+    }
+
+    public String render(Function<String, String> args) {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        String v = renderTo(buffer, args).toString();
+        if (MAX_BUFFER < buffer.capacity()) {
+            buffers.remove(); // do not keep the large buffer
+        }
+        return v;
+    }
+
+    public StringBuilder renderTo(StringBuilder out, Function<String, String> args) {
+        for (int i = 0; i < names.length; i++) {
+            out.append(literals[i]);
+            String arg = args.apply(names[i]);
+            if (arg != null) {
+                out.append(arg);
+            } else {
+                out.append('{').append(names[i]).append('}');
+            }
+        }
+        return out.append(literals[names.length]);
+    }
+
+}
@@ -0,0 +1,155 @@
+package sample.context.orm;
+
+import java.sql.DatabaseMetaData;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import sample.context.orm.OrmMapping.OrmColumn;
+import sample.context.orm.OrmMapping.OrmEntity;
+
+/**
+ * The native SQL variants of the database products.
+ */
+public enum OrmDialect {
+    H2,
+    POSTGRESQL,
+    MYSQL,
+    /** The dialect without native support. (falls back to the standard path) */
+    OTHER;
+
+    /** The upper limit of the bind parameters in one statement. */
+    public static final int MAX_BIND_PARAMETERS = 30000;
+
+    /** Returns true when the multi-row INSERT (VALUES (..), (..)) is supported. */
+    public boolean multiRowInsert() {
+        return this != OTHER;
+    }
+
+    /** Returns the INSERT of the entity, which is bound by the property names. */
+    public static String insert(OrmEntity entity) {
+        return "INSERT INTO " + entity.table() + " (" + columns(entity) + ") VALUES (" + values(entity) + ")";
+    }
+
+    /**
+     * Returns the multi-row INSERT of the entity, which is bound by the property
+     * names with the row index suffix. (e.g. "amount_0")
+     */
+    public static String insert(OrmEntity entity, int rows) {
+        var sql = new StringBuilder("INSERT INTO " + entity.table() + " (" + columns(entity) + ") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            final int row = i;
+            sql.append(0 < i ? ", (" : "(")
+                    .append(entity.columns().stream()
+                            .map(c -> ":" + c.property() + "_" + row)
+                            .collect(Collectors.joining(", ")))
+                    .append(")");
+        }
+        return sql.toString();
+    }
+
+    /** Returns the UPDATE by ID of the entity, which is bound by the property names. */
+    public static String update(OrmEntity entity) {
+        OrmColumn id = entity.idColumn();
+        return "UPDATE " + entity.table() + " SET "
+                + entity.columns().stream()
+                        .filter(c -> !c.id())
+                        .map(c -> c.name() + " = :" + c.property())
+                        .collect(Collectors.joining(", "))
+                + " WHERE " + id.name() + " = :" + id.property();
+    }
+
+    /**
+     * Returns the single-statement upsert of the entity, which is bound by the
+     * property names.
+     */
+    public Optional<String> upsert(OrmEntity entity) {
+        if (this == OTHER || !entity.flat()) {
+            return Optional.empty();
+        }
+        String id = entity.idColumn().name();
+        List<OrmColumn> updates = entity.columns().stream().filter(c -> !c.id()).toList();
+        String insert = insert(entity);
+        return Optional.of(switch (this) {
+            case H2 -> "MERGE INTO " + entity.table() + " (" + columns(entity) + ") KEY (" + id + ") VALUES ("
+                    + values(entity) + ")";
+            case POSTGRESQL -> insert + " ON CONFLICT (" + id + ") DO UPDATE SET "
+                    + updates.stream().map(c -> c.name() + " = EXCLUDED." + c.name()).collect(Collectors.joining(", "));
+            case MYSQL -> insert + " ON DUPLICATE KEY UPDATE "
+                    + updates.stream().map(c -> c.name() + " = VALUES(" + c.name() + ")").collect(Collectors.joining(", "));
+            default -> throw new IllegalStateException();
+        });
+    }
+
+    /**
+     * Returns the INSERT which does nothing when the row of the unique key
+     * exists, which is bound by the property names.
+     * low: INSERT IGNORE of MySQL ignores the other errors too.
+     */
+    public Optional<String> insertIfAbsent(OrmEntity entity, List<String> keyProperties) {
+        if (this == OTHER || !entity.flat()) {
+            return Optional.empty();
+        }
+        String insert = insert(entity);
+        return Optional.of(switch (this) {
+            case H2 -> "MERGE INTO " + entity.table() + " t USING (SELECT 1 AS one) s ON ("
+                    + keyProperties.stream()
+                            .map(p -> "t." + entity.column(p) + " = :" + p)
+                            .collect(Collectors.joining(" AND "))
+                    + ") WHEN NOT MATCHED THEN INSERT (" + columns(entity) + ") VALUES (" + values(entity) + ")";
+            case POSTGRESQL -> insert + " ON CONFLICT ("
+                    + keyProperties.stream().map(entity::column).collect(Collectors.joining(", "))
+                    + ") DO NOTHING";
+            case MYSQL -> "INSERT IGNORE" + insert.substring("INSERT".length());
+            default -> throw new IllegalStateException();
+        });
+    }
+
+    /**
+     * Returns the non-negative integer hash of the column, which partitions the
+     * rows with MOD. (e.g. the shards of the account ID)
+     */
+    public Optional<String> hash(String column) {
+        return switch (this) {
+            case H2 -> Optional.of("ORA_HASH(" + column + ")");
+            case POSTGRESQL -> Optional.of("ABS(HASHTEXT(" + column + ")::BIGINT)");
+            case MYSQL -> Optional.of("CRC32(" + column + ")");
+            default -> Optional.empty();
+        };
+    }
+
+    static String columns(OrmEntity entity) {
+        return entity.columns().stream().map(OrmColumn::name).collect(Collectors.joining(", "));
+    }
+
+    static String values(OrmEntity entity) {
+        return entity.columns().stream().map(c -> ":" + c.property()).collect(Collectors.joining(", "));
+    }
+
+    public static OrmDialect of(String productName) {
+        String name = productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+        if (name.contains("h2")) {
+            return H2;
+        } else if (name.contains("postgresql")) {
+            return POSTGRESQL;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        }
+        return OTHER;
+    }
+
+    public static OrmDialect of(DataSource dataSource) {
+        try {
+            return of(JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        } catch (MetaDataAccessException e) {
+            return OTHER;
+        }
+    }
+
+}
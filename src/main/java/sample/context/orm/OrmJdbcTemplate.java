@@ -0,0 +1,43 @@
+package sample.context.orm;
+
+import java.sql.PreparedStatement;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * NamedParameterJdbcTemplate which is shared by OrmRepository.
+ * <p>
+ * The parsed SQL is kept in the LRU cache of NamedParameterJdbcTemplate
+ * ("sample.orm.sql-cache-size"), for the SQL of OrmRepository#tmplJdbc and the
+ * native queries of OrmRepository/OrmTemplate. The finders which go through
+ * JdbcAggregateTemplate use the template of Spring Data JDBC instead.
+ */
+public class OrmJdbcTemplate extends NamedParameterJdbcTemplate {
+    public static final int DEFAULT_CACHE_LIMIT = 256;
+
+    public OrmJdbcTemplate(DataSource dataSource, int cacheLimit) {
+        super(dataSource);
+        setCacheLimit(cacheLimit);
+    }
+
+    /**
+     * Query with the forward-only cursor which reads fetchSize rows at a time.
+     * The returned stream must be closed to release the JDBC resources.
+     */
+    public <T> Stream<T> queryForStream(
+            String sql, SqlParameterSource params, RowMapper<T> rowMapper, int fetchSize) {
+        PreparedStatementCreator creator = getPreparedStatementCreator(sql, params);
+        return getJdbcTemplate().queryForStream(con -> {
+            PreparedStatement ps = creator.createPreparedStatement(con);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rowMapper);
+    }
+
+}
@@ -0,0 +1,152 @@
+package sample.context.orm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.springframework.data.jdbc.core.convert.EntityRowMapper;
+import org.springframework.data.jdbc.core.convert.JdbcConverter;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * The table/column metadata of the entity which is resolved from the mapping of
+ * Spring Data JDBC.
+ * <p>
+ * It is used to write native SQL (upsert, batch, ...) for any flat
+ * DomainEntity record.
+ * low: The names are used without quoting, so they are case-insensitive.
+ */
+public class OrmMapping {
+    private final JdbcConverter converter;
+    private final ConcurrentMap<Class<?>, OrmEntity> entities = new ConcurrentHashMap<>();
+
+    public OrmMapping(JdbcConverter converter) {
+        this.converter = converter;
+    }
+
+    /** Returns the metadata of the entity class. */
+    public OrmEntity entity(Class<?> clazz) {
+        OrmEntity entity = entities.get(clazz);
+        if (entity == null) {
+            entity = resolve(clazz);
+            entities.putIfAbsent(clazz, entity);
+        }
+        return entity;
+    }
+
+    private OrmEntity resolve(Class<?> clazz) {
+        RelationalPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(clazz);
+        List<OrmColumn> columns = new ArrayList<>();
+        boolean flat = true;
+        for (RelationalPersistentProperty property : entity) {
+            if (property.isEntity() || property.isCollectionLike() || property.isEmbedded()) {
+                flat = false;
+                continue;
+            }
+            columns.add(new OrmColumn(
+                    property.getName(),
+                    property.getColumnName().getReference(),
+                    property.isIdProperty(),
+                    property));
+        }
+        return new OrmEntity(
+                entity.getQualifiedTableName().getReference(),
+                List.copyOf(columns),
+                flat,
+                entity,
+                converter);
+    }
+
+    /** The column of the entity. */
+    public static record OrmColumn(
+            String property,
+            String name,
+            boolean id,
+            RelationalPersistentProperty metadata) {
+    }
+
+    /**
+     * The table of the entity.
+     * (flat is false when it has the relation or the embedded value, which native
+     * SQL does not support)
+     */
+    public static record OrmEntity(
+            String table,
+            List<OrmColumn> columns,
+            boolean flat,
+            RelationalPersistentEntity<?> metadata,
+            JdbcConverter converter) {
+
+        public OrmColumn idColumn() {
+            return columns.stream()
+                    .filter(OrmColumn::id)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No id column. [" + table + "]"));
+        }
+
+        /** Returns the column of the property. */
+        public OrmColumn columnOf(String property) {
+            return columns.stream()
+                    .filter(c -> c.property().equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Unknown property. [" + table + "." + property + "]"));
+        }
+
+        /** Returns the select list of the mapped columns. (e.g. "b.id, b.amount") */
+        public String selectColumns(String alias) {
+            return columns.stream()
+                    .map(c -> alias + "." + c.name())
+                    .collect(Collectors.joining(", "));
+        }
+
+        /** Returns the column name of the property. */
+        public String column(String property) {
+            return columnOf(property).name();
+        }
+
+        /** Converts the property value into the JDBC value. */
+        public Object write(String property, Object value) {
+            return write(columnOf(property), value);
+        }
+
+        private Object write(OrmColumn column, Object value) {
+            return converter.writeValue(value, TypeInformation.of(converter.getColumnType(column.metadata())));
+        }
+
+        /** Returns the mapper from the row into the entity. */
+        @SuppressWarnings("unchecked")
+        public <T> RowMapper<T> rowMapper() {
+            return new EntityRowMapper<>((RelationalPersistentEntity<T>) metadata, converter);
+        }
+
+        /** Returns the property value of the entity. (not converted) */
+        public Object property(Object entity, String property) {
+            return metadata.getPropertyAccessor(entity).getProperty(metadata.getRequiredPersistentProperty(property));
+        }
+
+        /** Returns the column values of the entity. (keyed by the property name) */
+        public Map<String, Object> values(Object entity) {
+            PersistentPropertyAccessor<?> accessor = metadata.getPropertyAccessor(entity);
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (OrmColumn column : columns) {
+                values.put(column.property(), write(column, accessor.getProperty(column.metadata())));
+            }
+            return values;
+        }
+
+        public MapSqlParameterSource params(Object entity) {
+            return new MapSqlParameterSource(values(entity));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package sample.context.orm;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.relational.core.query.CriteriaDefinition;
+import org.springframework.data.relational.core.query.CriteriaDefinition.Combinator;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import sample.context.orm.OrmMapping.OrmEntity;
+
+/**
+ * The native SELECT which is rendered from Criteria and Sort.
+ * <p>
+ * The property names of Criteria are resolved to the columns with OrmMapping,
+ * and the values are bound with the converted JDBC values.
+ * low: ignoreCase of Criteria is not supported.
+ */
+public record OrmQuery(String sql, MapSqlParameterSource params) {
+
+    public static OrmQuery select(OrmEntity entity, CriteriaDefinition criteria, Sort sort) {
+        var params = new MapSqlParameterSource();
+        var sql = new StringBuilder("SELECT ")
+                .append(OrmDialect.columns(entity))
+                .append(" FROM ").append(entity.table());
+        String where = render(entity, criteria, params);
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (sort.isSorted()) {
+            sql.append(" ORDER BY ").append(sort.stream()
+                    .map(o -> entity.column(o.getProperty()) + (o.isAscending() ? " ASC" : " DESC"))
+                    .collect(Collectors.joining(", ")));
+        }
+        return new OrmQuery(sql.toString(), params);
+    }
+
+    /** Renders the condition. (empty when there is no condition) */
+    public static String render(OrmEntity entity, CriteriaDefinition criteria, MapSqlParameterSource params) {
+        Deque<CriteriaDefinition> chain = new ArrayDeque<>();
+        for (CriteriaDefinition c = criteria; c != null; c = c.getPrevious()) {
+            chain.push(c);
+        }
+        var sql = new StringBuilder();
+        for (CriteriaDefinition c : chain) {
+            String part = c.isGroup() ? renderGroup(entity, c.getGroup(), params) : renderTerm(entity, c, params);
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (!sql.isEmpty()) {
+                sql.append(c.getCombinator() == Combinator.OR ? " OR " : " AND ");
+            }
+            sql.append(part);
+        }
+        return sql.toString();
+    }
+
+    private static String renderGroup(
+            OrmEntity entity, List<CriteriaDefinition> group, MapSqlParameterSource params) {
+        var sql = new StringBuilder();
+        for (CriteriaDefinition c : group) {
+            String part = render(entity, c, params);
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (!sql.isEmpty()) {
+                sql.append(c.getCombinator() == Combinator.OR ? " OR " : " AND ");
+            }
+            sql.append(part);
+        }
+        return sql.isEmpty() ? "" : "(" + sql + ")";
+    }
+
+    private static String renderTerm(OrmEntity entity, CriteriaDefinition c, MapSqlParameterSource params) {
+        if (c.getColumn() == null) {
+            return "";
+        }
+        String property = c.getColumn().getReference();
+        String column = entity.column(property);
+        var comparator = c.getComparator();
+        Object value = c.getValue();
+        return switch (comparator) {
+            case IS_NULL, IS_NOT_NULL, IS_TRUE, IS_FALSE -> column + " " + comparator.getComparator();
+            case IN, NOT_IN -> {
+                Collection<?> values = value instanceof Collection<?> list ? list : List.of(value);
+                if (values.isEmpty()) {
+                    yield comparator == CriteriaDefinition.Comparator.IN ? "1 = 0" : "1 = 1";
+                }
+                yield column + " " + comparator.getComparator() + " (" + values.stream()
+                        .map(v -> bind(entity, property, v, params))
+                        .collect(Collectors.joining(", ")) + ")";
+            }
+            case BETWEEN, NOT_BETWEEN -> {
+                Pair<?, ?> range = (Pair<?, ?>) value;
+                yield column + " " + comparator.getComparator() + " "
+                        + bind(entity, property, range.getFirst(), params) + " AND "
+                        + bind(entity, property, range.getSecond(), params);
+            }
+            case INITIAL -> "";
+            default -> column + " " + comparator.getComparator() + " " + bind(entity, property, value, params);
+        };
+    }
+
+    private static String bind(OrmEntity entity, String property, Object value, MapSqlParameterSource params) {
+        String name = "p" + (params.getValues().size() + 1);
+        params.addValue(name, entity.write(property, value));
+        return ":" + name;
+    }
+
+}
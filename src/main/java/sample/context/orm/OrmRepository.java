@@ -1,21 +1,30 @@
 package sample.context.orm;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Component;
 
-import lombok.RequiredArgsConstructor;
 import sample.context.DomainEntity;
 import sample.context.DomainHelper;
 import sample.context.Repository;
@@ -28,13 +37,51 @@ import sample.model.DomainErrorKeys;
  * This component provides simple JDBC implementation in form not to use a base
  * of Spring Data
  * to realize 1-n relations of Repository and Entity.
+ * <p>
+ * OrmTemplate and NamedParameterJdbcTemplate are shared by all the callers, so
+ * that the parsed SQL is reused. (see OrmJdbcTemplate)
+ * <p>
+ * saveOrUpdate writes the flat entity with the single-statement upsert of the
+ * database (see OrmDialect), and falls back to exists and insert/update.
+ * insertBatch/updateBatch/saveOrUpdateBatch write many flat entities with the
+ * JDBC batch.
+ * low: The upsert and the batches write the rows with SQL directly, so the
+ * lifecycle events and the entity callbacks of Spring Data JDBC (BeforeSave,
+ * AfterSave, ...) are not invoked. Use save/update for the entity which
+ * needs them.
  */
 @Component
-@RequiredArgsConstructor(staticName = "of")
 public class OrmRepository implements Repository {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     private final DomainHelper dh;
-    private final DataSource dataSource;
     private final JdbcAggregateTemplate jdbcTemplate;
+    private final OrmJdbcTemplate jdbc;
+    private final OrmTemplate tmpl;
+    private final OrmMapping mapping;
+    private final DataSource dataSource;
+    private final int batchSize;
+    private volatile OrmDialect dialect;
+
+    @Autowired
+    public OrmRepository(
+            DomainHelper dh,
+            DataSource dataSource,
+            JdbcAggregateTemplate jdbcTemplate,
+            @Value("${sample.orm.sql-cache-size:256}") int sqlCacheSize,
+            @Value("${sample.orm.batch-size:500}") int batchSize) {
+        this.dh = dh;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbc = new OrmJdbcTemplate(dataSource, sqlCacheSize);
+        this.mapping = new OrmMapping(jdbcTemplate.getConverter());
+        this.tmpl = OrmTemplate.of(jdbcTemplate, jdbc, mapping);
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+    }
+
+    public static OrmRepository of(DomainHelper dh, DataSource dataSource, JdbcAggregateTemplate jdbcTemplate) {
+        return new OrmRepository(dh, dataSource, jdbcTemplate, OrmJdbcTemplate.DEFAULT_CACHE_LIMIT, DEFAULT_BATCH_SIZE);
+    }
 
     @Override
     public DomainHelper dh() {
@@ -42,11 +89,24 @@ public class OrmRepository implements Repository {
     }
 
     public OrmTemplate tmpl() {
-        return OrmTemplate.of(this.jdbcTemplate, this.tmplJdbc());
+        return this.tmpl;
     }
 
     public NamedParameterJdbcTemplate tmplJdbc() {
-        return new NamedParameterJdbcTemplate(this.dataSource);
+        return this.jdbc;
+    }
+
+    /** Returns the table/column metadata of the entities. */
+    public OrmMapping mapping() {
+        return this.mapping;
+    }
+
+    /** Returns the dialect of the database. (detected on the first call) */
+    public OrmDialect dialect() {
+        if (this.dialect == null) {
+            this.dialect = OrmDialect.of(this.dataSource);
+        }
+        return this.dialect;
     }
 
     @Override
@@ -80,8 +140,21 @@ public class OrmRepository implements Repository {
         return jdbcTemplate.insert(entity);
     }
 
+    /**
+     * Insert or update the entity by ID.
+     * <p>
+     * With the upsert of the dialect, the lifecycle callbacks of Spring Data
+     * JDBC are skipped, and the given entity is returned as it is. (the ID is
+     * assigned by the caller, and the entity has no version column)
+     */
     @Override
     public <T extends DomainEntity> T saveOrUpdate(T entity) {
+        var metadata = this.mapping.entity(entity.getClass());
+        var upsert = this.dialect().upsert(metadata);
+        if (upsert.isPresent()) {
+            this.jdbc.update(upsert.get(), metadata.params(entity));
+            return entity;
+        }
         if (this.exists(entity.getClass(), entity.id())) {
             return this.update(entity);
         } else {
@@ -89,6 +162,29 @@ public class OrmRepository implements Repository {
         }
     }
 
+    /**
+     * Insert the flat entity unless the row of the unique key exists.
+     *
+     * @param keyProperties the properties of the unique key
+     * @return true when it is inserted
+     */
+    public <T extends DomainEntity> boolean insertIfAbsent(T entity, String... keyProperties) {
+        var metadata = this.mapping.entity(entity.getClass());
+        var insert = this.dialect().insertIfAbsent(metadata, List.of(keyProperties));
+        if (insert.isPresent()) {
+            return 0 < this.jdbc.update(insert.get(), metadata.params(entity));
+        }
+        Map<String, Object> conditions = new LinkedHashMap<>();
+        for (String property : keyProperties) {
+            conditions.put(property, metadata.property(entity, property));
+        }
+        if (this.tmpl.exists(entity.getClass(), conditions)) {
+            return false;
+        }
+        this.save(entity);
+        return true;
+    }
+
     @Override
     public <T extends DomainEntity> T update(T entity) {
         return jdbcTemplate.save(entity);
@@ -100,6 +196,137 @@ public class OrmRepository implements Repository {
         return entity;
     }
 
+    /**
+     * Insert the entities of the same class with the JDBC batch.
+     * <p>
+     * Every batchSize rows are written as one multi-row INSERT when the dialect
+     * supports it, otherwise with addBatch/executeBatch.
+     * low: PostgreSQL (reWriteBatchedInserts) and MySQL (rewriteBatchedStatements)
+     * rewrite the batch in the driver by the JDBC URL options.
+     */
+    public <T extends DomainEntity> void insertBatch(List<T> entities) {
+        insertBatch(entities, this.batchSize);
+    }
+
+    public <T extends DomainEntity> void insertBatch(List<T> entities, int batchSize) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        var metadata = this.mapping.entity(entities.get(0).getClass());
+        if (!metadata.flat()) {
+            this.jdbcTemplate.insertAll(entities);
+            return;
+        }
+        if (this.dialect().multiRowInsert()) {
+            int rows = Math.max(1, Math.min(batchSize, OrmDialect.MAX_BIND_PARAMETERS / metadata.columns().size()));
+            for (List<T> chunk : chunks(entities, rows)) {
+                var params = new MapSqlParameterSource();
+                for (int i = 0; i < chunk.size(); i++) {
+                    final int row = i;
+                    metadata.values(chunk.get(i)).forEach((k, v) -> params.addValue(k + "_" + row, v));
+                }
+                this.jdbc.update(OrmDialect.insert(metadata, chunk.size()), params);
+            }
+        } else {
+            String sql = OrmDialect.insert(metadata);
+            for (List<T> chunk : chunks(entities, batchSize)) {
+                this.jdbc.batchUpdate(sql, chunk.stream()
+                        .map(metadata::params)
+                        .toArray(SqlParameterSource[]::new));
+            }
+        }
+    }
+
+    /**
+     * Insert the entities of the same class with the JDBC batch unless the row
+     * of the same key exists, and falls back to insertIfAbsent row by row.
+     * low: The driver which answers SUCCESS_NO_INFO for the batch is not counted.
+     *
+     * @return the count of the inserted rows
+     */
+    public <T extends DomainEntity> int insertIfAbsentBatch(List<T> entities, String... keyProperties) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        var metadata = this.mapping.entity(entities.get(0).getClass());
+        var insert = this.dialect().insertIfAbsent(metadata, List.of(keyProperties));
+        if (insert.isEmpty()) {
+            return (int) entities.stream().filter(e -> this.insertIfAbsent(e, keyProperties)).count();
+        }
+        int inserted = 0;
+        for (List<T> chunk : chunks(entities, this.batchSize)) {
+            int[] counts = this.jdbc.batchUpdate(insert.get(), chunk.stream()
+                    .map(metadata::params)
+                    .toArray(SqlParameterSource[]::new));
+            for (int count : counts) {
+                inserted += Math.max(0, count);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Update the entities of the same class by ID with the JDBC batch.
+     */
+    public <T extends DomainEntity> void updateBatch(List<T> entities) {
+        updateBatch(entities, this.batchSize);
+    }
+
+    public <T extends DomainEntity> void updateBatch(List<T> entities, int batchSize) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        var metadata = this.mapping.entity(entities.get(0).getClass());
+        if (!metadata.flat()) {
+            this.jdbcTemplate.updateAll(entities);
+            return;
+        }
+        String sql = OrmDialect.update(metadata);
+        for (List<T> chunk : chunks(entities, batchSize)) {
+            int[] counts = this.jdbc.batchUpdate(sql, chunk.stream()
+                    .map(metadata::params)
+                    .toArray(SqlParameterSource[]::new));
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    throw new IncorrectUpdateSemanticsDataAccessException(
+                            "Failed to update entity [" + chunk.get(i).id() + "]. Id not found in database.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert or update the entities of the same class with the JDBC batch of the
+     * single-statement upsert, and falls back to exists and insertBatch/updateBatch.
+     */
+    public <T extends DomainEntity> void saveOrUpdateBatch(List<T> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        var metadata = this.mapping.entity(entities.get(0).getClass());
+        var upsert = this.dialect().upsert(metadata);
+        if (upsert.isPresent()) {
+            for (List<T> chunk : chunks(entities, this.batchSize)) {
+                this.jdbc.batchUpdate(upsert.get(), chunk.stream()
+                        .map(metadata::params)
+                        .toArray(SqlParameterSource[]::new));
+            }
+            return;
+        }
+        Map<Boolean, List<T>> exists = entities.stream()
+                .collect(Collectors.partitioningBy(e -> this.exists(e.getClass(), e.id())));
+        this.updateBatch(exists.get(true));
+        this.insertBatch(exists.get(false));
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return chunks;
+    }
+
     // Additional convenience methods for Spring Data JDBC style operations
 
     /**
@@ -127,14 +354,22 @@ public class OrmRepository implements Repository {
      * Find all entities with pagination.
      */
     public <T extends DomainEntity> Page<T> findAll(Class<T> clazz, Pageable pageable) {
-        Iterable<T> entities = jdbcTemplate.findAll(clazz, pageable.getSort());
-        List<T> content = StreamSupport.stream(entities.spliterator(), false)
-                .skip(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .collect(Collectors.toList());
+        return jdbcTemplate.findAll(clazz, pageable);
+    }
+
+    /**
+     * Find a slice of all entities without counting the total.
+     */
+    public <T extends DomainEntity> Slice<T> findSlice(Class<T> clazz, Pageable pageable) {
+        return tmpl.slice(clazz, criteria -> criteria, pageable);
+    }
 
-        long total = jdbcTemplate.count(clazz);
-        return new PageImpl<>(content, pageable, total);
+    /**
+     * Scroll all entities with keyset pagination.
+     */
+    public <T extends DomainEntity> Window<T> scroll(
+            Class<T> clazz, Sort sort, KeysetScrollPosition position, int limit) {
+        return tmpl.scroll(clazz, criteria -> criteria, sort, position, limit);
     }
 
     /**
@@ -1,18 +1,25 @@
 package sample.context.orm;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.relational.core.query.Query;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import lombok.RequiredArgsConstructor;
 import sample.context.ValidationException;
@@ -20,7 +27,7 @@ import sample.model.DomainErrorKeys;
 
 /**
  * Simple Accessor for JdbcAggregateTemplate operations.
- * (you are formed every session, and please use it)
+ * (stateless, and shared through OrmRepository#tmpl)
  * <p>
  * This provides JDBC-based operations using Spring Data JDBC's Criteria API
  * for dynamic query construction and JdbcAggregateTemplate for execution.
@@ -28,7 +35,8 @@ import sample.model.DomainErrorKeys;
 @RequiredArgsConstructor(staticName = "of")
 public class OrmTemplate {
     private final JdbcAggregateTemplate template;
-    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final OrmJdbcTemplate namedParameterJdbcTemplate;
+    private final OrmMapping mapping;
 
     /**
      * Get a single entity using Criteria-based query.
@@ -241,6 +249,115 @@ public class OrmTemplate {
         return new PageImpl<>(content, pageable, total);
     }
 
+    /**
+     * Stream entities with the forward-only cursor.
+     * <p>
+     * The rows are fetched by fetchSize and mapped lazily, so large results are
+     * walked in constant memory. The stream must be closed (try-with-resources)
+     * to release the connection resources.
+     * low: PostgreSQL uses the cursor only in the transaction, and MySQL needs
+     * useCursorFetch=true for the fetch size. MySQL does not run other statements
+     * on the connection while the stream is open, so do not update in the walk
+     * (use the keyset chunks for it).
+     * 
+     * @param clazz           Entity class
+     * @param criteriaBuilder Function to build criteria
+     * @param sort            Sort specification
+     * @param fetchSize       Number of rows fetched at a time
+     * @return Stream of entities
+     */
+    public <T> Stream<T> stream(Class<T> clazz,
+            Function<Criteria, Criteria> criteriaBuilder,
+            Sort sort,
+            int fetchSize) {
+        var entity = mapping.entity(clazz);
+        var query = OrmQuery.select(entity, criteriaBuilder.apply(Criteria.empty()), sort);
+        return namedParameterJdbcTemplate.queryForStream(
+                query.sql(), query.params(), entity.<T>rowMapper(), fetchSize);
+    }
+
+    /**
+     * Find a slice using Criteria without counting the total.
+     * (it reads one more row to know whether the next slice exists)
+     * 
+     * @param clazz           Entity class
+     * @param criteriaBuilder Function to build criteria
+     * @param pageable        Pagination information
+     * @return Slice of entities
+     */
+    public <T> Slice<T> slice(Class<T> clazz,
+            Function<Criteria, Criteria> criteriaBuilder,
+            Pageable pageable) {
+        Criteria criteria = criteriaBuilder.apply(Criteria.empty());
+        Query query = Query.query(criteria).with(pageable).limit(pageable.getPageSize() + 1);
+
+        List<T> content = template.findAll(query, clazz);
+        boolean hasNext = pageable.getPageSize() < content.size();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    /**
+     * Scroll entities with keyset (seek) pagination.
+     * <p>
+     * The rows after the position are read with the condition on the sort
+     * columns, so the cost does not depend on the depth of the page. The ID is
+     * appended to the sort as the tie-breaker.
+     * low: Only forward scrolling over the non-null sort columns is supported.
+     * 
+     * @param clazz           Entity class
+     * @param criteriaBuilder Function to build criteria
+     * @param sort            Sort specification
+     * @param position        Position of the last row (ScrollPosition.keyset()
+     *                        for the first window)
+     * @param limit           Maximum number of entities
+     * @return Window of entities
+     */
+    public <T> Window<T> scroll(Class<T> clazz,
+            Function<Criteria, Criteria> criteriaBuilder,
+            Sort sort,
+            KeysetScrollPosition position,
+            int limit) {
+        if (position.scrollsBackward()) {
+            throw new IllegalArgumentException("Backward scrolling is not supported.");
+        }
+        var entity = mapping.entity(clazz);
+        String idProperty = entity.idColumn().property();
+        Sort keySort = sort.getOrderFor(idProperty) != null ? sort : sort.and(Sort.by(idProperty));
+        List<Sort.Order> orders = keySort.toList();
+
+        Criteria criteria = criteriaBuilder.apply(Criteria.empty());
+        if (!position.isInitial()) {
+            Map<String, Object> keys = position.getKeys();
+            Criteria seek = Criteria.empty();
+            for (int i = 0; i < orders.size(); i++) {
+                Criteria term = Criteria.empty();
+                for (int j = 0; j < i; j++) {
+                    String property = orders.get(j).getProperty();
+                    term = term.and(Criteria.where(property).is(keys.get(property)));
+                }
+                Sort.Order order = orders.get(i);
+                Object key = keys.get(order.getProperty());
+                term = term.and(order.isAscending()
+                        ? Criteria.where(order.getProperty()).greaterThan(key)
+                        : Criteria.where(order.getProperty()).lessThan(key));
+                seek = seek.or(term);
+            }
+            criteria = criteria.and(seek);
+        }
+        Query query = Query.query(criteria).sort(keySort).limit(limit + 1);
+
+        List<T> content = new ArrayList<>(template.findAll(query, clazz));
+        boolean hasNext = limit < content.size();
+        List<T> items = hasNext ? content.subList(0, limit) : content;
+        return Window.from(items, i -> {
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (Sort.Order order : orders) {
+                keys.put(order.getProperty(), entity.property(items.get(i), order.getProperty()));
+            }
+            return ScrollPosition.forward(keys);
+        }, hasNext);
+    }
+
     /**
      * Find all entities of a specific type.
      * 
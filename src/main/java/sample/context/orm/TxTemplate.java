@@ -1,5 +1,8 @@
 package sample.context.orm;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -18,10 +21,16 @@ import sample.context.lock.IdLockHandler.LockType;
  * <p>
  * This utility will assume a support builder usage of TransactionTemplate.
  * Please make sure to generate and use for each transaction.
+ * <p>
+ * The ID lock is taken before the transaction begins, so a thread waiting for
+ * the lock does not hold a DB connection. (it matters with virtual threads,
+ * where the connection pool becomes the bottleneck) The lease of the lock is
+ * verified before the commit. (see IdLockHandler#verifyLease)
  */
 public class TxTemplate {
     private Optional<IdLockHandler> idLock = Optional.empty();
-    private Optional<IdLockPair> IdLockPair = Optional.empty();
+    private List<IdLockPair> idLockPairs = List.of();
+    private Optional<Duration> idLockTimeout = Optional.empty();
     private final TransactionTemplate tmpl;
 
     public TxTemplate(PlatformTransactionManager txm) {
@@ -55,23 +64,53 @@ public class TxTemplate {
     public TxTemplate readIdLock(IdLockHandler idLock, Object id) {
         Assert.notNull(id, "id is required.");
         this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.READ));
+        this.idLockPairs = List.of(new IdLockPair(id, LockType.READ));
         return this;
     }
 
+    /**
+     * Takes the READ lock of the ID.
+     * (ValidationException is thrown when it is not acquired within the timeout)
+     */
+    public TxTemplate readIdLock(IdLockHandler idLock, Object id, Duration timeout) {
+        this.idLockTimeout = Optional.ofNullable(timeout);
+        return this.readIdLock(idLock, id);
+    }
+
     public TxTemplate writeIdLock(IdLockHandler idLock, Object id) {
         Assert.notNull(id, "id is required.");
         this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.WRITE));
+        this.idLockPairs = List.of(new IdLockPair(id, LockType.WRITE));
+        return this;
+    }
+
+    /**
+     * Takes the WRITE lock of the ID.
+     * (ValidationException is thrown when it is not acquired within the timeout)
+     */
+    public TxTemplate writeIdLock(IdLockHandler idLock, Object id, Duration timeout) {
+        this.idLockTimeout = Optional.ofNullable(timeout);
+        return this.writeIdLock(idLock, id);
+    }
+
+    /**
+     * Takes the locks of multiple IDs at once.
+     * (they are acquired in a canonical order, so crossed orders do not deadlock)
+     */
+    public TxTemplate idLocks(IdLockHandler idLock, Collection<IdLockPair> pairs, Duration timeout) {
+        Assert.notNull(pairs, "pairs is required.");
+        this.idLock = Optional.ofNullable(idLock);
+        this.idLockPairs = List.copyOf(pairs);
+        this.idLockTimeout = Optional.ofNullable(timeout);
         return this;
     }
 
     public void tx(Runnable runnable) {
         if (this.idLock.isPresent()) {
-            this.idLock.get().call(this.IdLockPair.get().id(), this.IdLockPair.get().lockType(), () -> {
+            this.idLock.get().call(this.idLockPairs, this.idLockTimeout.orElse(null), () -> {
                 tmpl.execute(status -> {
                     runnable.run();
-                    return null;
+                    return this.verifyLeases(null);
                 });
             });
         } else {
@@ -84,13 +123,18 @@ public class TxTemplate {
 
     public <T> T tx(Supplier<T> supplier) {
         if (this.idLock.isPresent()) {
-            return this.idLock.get().call(this.IdLockPair.get().id(), this.IdLockPair.get().lockType(),
-                    () -> tmpl.execute(status -> supplier.get()));
+            return this.idLock.get().call(this.idLockPairs, this.idLockTimeout.orElse(null),
+                    () -> tmpl.execute(status -> this.verifyLeases(supplier.get())));
         } else {
             return tmpl.execute(status -> supplier.get());
         }
     }
 
+    private <T> T verifyLeases(T value) {
+        this.idLockPairs.forEach(pair -> this.idLock.get().verifyLease(pair.id()));
+        return value;
+    }
+
     public static TxTemplate of(PlatformTransactionManager txm) {
         return new TxTemplate(txm);
     }
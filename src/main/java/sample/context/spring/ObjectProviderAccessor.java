@@ -9,6 +9,9 @@ import org.springframework.stereotype.Component;
 
 /**
  * ObjectProvider Fast Access Utility.
+ * <p>
+ * The bean is resolved outside of the map operation, so that the bean creation
+ * does not block the map (and does not pin a virtual thread).
  */
 @Component
 public class ObjectProviderAccessor {
@@ -17,14 +20,26 @@ public class ObjectProviderAccessor {
 
     @SuppressWarnings("unchecked")
     public <T> T bean(ObjectProvider<T> target, Class<T> clazz) {
-        cache.computeIfAbsent(clazz, k -> target.getObject());
-        return (T) cache.get(clazz);
+        Object v = cache.get(clazz);
+        if (v == null) {
+            v = target.getObject();
+            Object prev = cache.putIfAbsent(clazz, v);
+            v = prev != null ? prev : v;
+        }
+        return (T) v;
     }
 
     @SuppressWarnings("unchecked")
     public <T> Optional<T> beanOpt(ObjectProvider<T> target, Class<T> clazz) {
-        cache.computeIfAbsent(clazz, k -> target.getIfAvailable());
-        return Optional.ofNullable(cache.get(clazz)).map(v -> (T) v);
+        Object v = cache.get(clazz);
+        if (v == null) {
+            v = target.getIfAvailable();
+            if (v != null) {
+                Object prev = cache.putIfAbsent(clazz, v);
+                v = prev != null ? prev : v;
+            }
+        }
+        return Optional.ofNullable(v).map(bean -> (T) bean);
     }
 
 }
@@ -1,27 +1,76 @@
 package sample.context.uid;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import sample.context.uid.IdSequenceStore.MemoryIdSequenceStore;
+
 /**
  * Utility component for ID generation.
- * low: It is memory-based because it is a sample, but actually it depends on
- * resource because there is a need for persistence.
+ * <p>
+ * The sequence values are reserved from IdSequenceStore in blocks
+ * ("sample.uid.block-size"), and handed out from the block without locking.
+ * Only the thread which exhausts the block reserves the next one.
+ * low: The values of an unused block are skipped by the restart.
+ * <p>
+ * The keys listed in "sample.uid.time-ordered" get the time-ordered compact ID
+ * (see TimeIdGenerator) instead of the random UUID, so that the primary key
+ * index is appended in time order.
  */
 @Component
 public class IdGenerator {
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+    public static final String CASH_IN_OUT_PREFIX = "CIO";
+    public static final Set<String> DEFAULT_TIME_ORDERED = Set.of("Cashflow", "CashBalance");
+
+    private final IdSequenceStore store;
+    private final int blockSize;
+    private final Set<String> timeOrdered;
+    private final TimeIdGenerator timeIds;
+    private final ConcurrentMap<String, IdBlock> blocks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReentrantLock> reserveLocks = new ConcurrentHashMap<>();
+
+    public IdGenerator() {
+        this(new MemoryIdSequenceStore(), DEFAULT_BLOCK_SIZE);
+    }
+
+    public IdGenerator(IdSequenceStore store, int blockSize) {
+        this(store, blockSize, DEFAULT_TIME_ORDERED, 0);
+    }
+
+    public IdGenerator(IdSequenceStore store, int blockSize, Set<String> timeOrdered, int node) {
+        this.store = store;
+        this.blockSize = blockSize;
+        this.timeOrdered = Set.copyOf(timeOrdered);
+        this.timeIds = new TimeIdGenerator(node);
+    }
 
-    private Map<String, AtomicLong> values = new HashMap<>();
+    @Autowired
+    public IdGenerator(
+            ObjectProvider<IdSequenceStore> store,
+            @Value("${sample.uid.block-size:1000}") int blockSize,
+            @Value("${sample.uid.time-ordered:Cashflow,CashBalance}") Set<String> timeOrdered,
+            @Value("${sample.uid.node:0}") int node) {
+        this(store.getIfAvailable(MemoryIdSequenceStore::new), blockSize, timeOrdered, node);
+    }
 
     public String generate(String key) {
         switch (key) {
             case "CashInOut":
                 return formatCashInOut(nextValue(key));
             default:
+                if (timeOrdered.contains(key)) {
+                    return timeIds.next();
+                }
                 return UUID.randomUUID().toString().replace("-", "");
         }
     }
@@ -29,14 +78,38 @@ public class IdGenerator {
     private String formatCashInOut(long v) {
         // low: Correct code formatting including fixed digitization and 0 padding is
         // required.
-        return "CIO" + v;
+        return CASH_IN_OUT_PREFIX + v;
     }
 
-    private synchronized long nextValue(String key) {
-        if (!values.containsKey(key)) {
-            values.put(key, new AtomicLong(0));
+    private long nextValue(String key) {
+        while (true) {
+            IdBlock block = blocks.get(key);
+            if (block != null) {
+                long v = block.next().getAndIncrement();
+                if (v < block.end()) {
+                    return v;
+                }
+            }
+            reserve(key, block);
         }
-        return values.get(key).incrementAndGet();
+    }
+
+    private void reserve(String key, IdBlock exhausted) {
+        ReentrantLock lock = reserveLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (blocks.get(key) != exhausted) {
+                return; // reserved by the other thread
+            }
+            long first = store.reserve(key, blockSize);
+            blocks.put(key, new IdBlock(new AtomicLong(first), first + blockSize));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The reserved block [next, end). */
+    private static record IdBlock(AtomicLong next, long end) {
     }
 
 }
@@ -0,0 +1,34 @@
+package sample.context.uid;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The store which reserves blocks of the sequence values.
+ */
+public interface IdSequenceStore {
+
+    /**
+     * Reserves the block of the sequence values.
+     *
+     * @param key  sequence key
+     * @param size block size
+     * @return the first value of the block [first, first + size)
+     */
+    long reserve(String key, int size);
+
+    /**
+     * The store on memory.
+     * low: The values are reset by the restart.
+     */
+    public static class MemoryIdSequenceStore implements IdSequenceStore {
+        private final ConcurrentMap<String, AtomicLong> values = new ConcurrentHashMap<>();
+
+        @Override
+        public long reserve(String key, int size) {
+            return values.computeIfAbsent(key, k -> new AtomicLong(0)).getAndAdd(size) + 1;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package sample.context.uid;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The sequence store on the sequence table of DB. (disabled by
+ * "sample.uid.sequence=memory")
+ * <p>
+ * A block is reserved by the update of ID_SEQUENCE in a separate transaction,
+ * so that the reserved values survive the rollback and the restart. The
+ * reservation runs on its own small pool ("sample.uid.sequence-pool-size"),
+ * because the caller waits for it while holding the connection of its
+ * transaction; on the shared pool, the callers at the block boundary could take
+ * all the connections.
+ * <p>
+ * The row of the key is created from the existing IDs of the table (see
+ * SEEDS), so the sequence added to the DB which already has the rows does not
+ * issue the same IDs again.
+ */
+@Component
+@ConditionalOnProperty(name = "sample.uid.sequence", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcIdSequenceStore implements IdSequenceStore {
+    public static final int DEFAULT_POOL_SIZE = 2;
+    /** The tables and the prefixes of the IDs which the sequence keys issue. */
+    public static final Map<String, SequenceSeed> SEEDS = Map.of(
+            "CashInOut", new SequenceSeed("cash_in_out", IdGenerator.CASH_IN_OUT_PREFIX));
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final HikariDataSource pool;
+
+    public JdbcIdSequenceStore(DataSource dataSource) {
+        this(dataSource, DEFAULT_POOL_SIZE);
+    }
+
+    @Autowired
+    public JdbcIdSequenceStore(
+            DataSource dataSource,
+            @Value("${sample.uid.sequence-pool-size:2}") int poolSize) {
+        this.pool = dataSource instanceof HikariDataSource hikari ? pool(hikari, poolSize) : null;
+        DataSource sequenceDataSource = this.pool != null ? this.pool : dataSource;
+        this.jdbc = new JdbcTemplate(sequenceDataSource);
+        this.tx = new TransactionTemplate(new JdbcTransactionManager(sequenceDataSource));
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // low: The DataSource which is not pooled opens the connection for each call,
+    // so it is used as it is.
+    private static HikariDataSource pool(HikariDataSource dataSource, int poolSize) {
+        var config = new HikariConfig();
+        dataSource.copyStateTo(config);
+        config.setPoolName(dataSource.getPoolName() + "-uid");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(0);
+        return new HikariDataSource(config);
+    }
+
+    @Override
+    public long reserve(String key, int size) {
+        while (true) {
+            try {
+                return tx.execute(status -> {
+                    int updated = jdbc.update(
+                            "UPDATE id_sequence SET next_value = next_value + ? WHERE id = ?", size, key);
+                    if (updated == 0) {
+                        long first = seed(key) + 1;
+                        jdbc.update("INSERT INTO id_sequence (id, next_value) VALUES (?, ?)", key, first + size);
+                        return first;
+                    }
+                    long next = jdbc.queryForObject(
+                            "SELECT next_value FROM id_sequence WHERE id = ?", Long.class, key);
+                    return next - size;
+                });
+            } catch (DuplicateKeyException e) {
+                // The other node inserted the row first, so update it again.
+            }
+        }
+    }
+
+    /**
+     * Returns the largest value of the existing IDs of the key. (0 without them)
+     * low: It is read once when the row of the key is created. The longest ID is
+     * the largest, since the values are not padded.
+     */
+    private long seed(String key) {
+        SequenceSeed seed = SEEDS.get(key);
+        if (seed == null) {
+            return 0;
+        }
+        List<String> ids = jdbc.queryForList(
+                "SELECT id FROM " + seed.table() + " WHERE id LIKE ? ORDER BY LENGTH(id) DESC, id DESC LIMIT 1",
+                String.class, seed.prefix() + "%");
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(ids.get(0).substring(seed.prefix().length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("The ID is not of the sequence [" + ids.get(0) + "].", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /** The table of the IDs of the sequence key, and the prefix of its IDs. */
+    public static record SequenceSeed(String table, String prefix) {
+    }
+
+}
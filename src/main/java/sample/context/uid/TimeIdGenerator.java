@@ -0,0 +1,64 @@
+package sample.context.uid;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of the time-ordered compact ID. (Snowflake style)
+ * <p>
+ * The ID is 63 bits of [41 bits: milliseconds since 2020-01-01 UTC] [10 bits:
+ * node ID] [12 bits: sequence], and it is formatted into 13 characters of
+ * Crockford Base32, so that the string order equals the generation order.
+ * <p>
+ * The IDs are monotonic within the node. When the sequence overflows in a
+ * millisecond (or the clock goes back), it continues on the last timestamp
+ * instead of waiting.
+ */
+public class TimeIdGenerator {
+    public static final long EPOCH = 1577836800000L;
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 13;
+
+    private final long node;
+    /** [timestamp][sequence] of the last ID. */
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeIdGenerator(int node) {
+        if (node < 0 || MAX_NODE < node) {
+            throw new IllegalArgumentException("node must be 0.." + MAX_NODE + ". [" + node + "]");
+        }
+        this.node = node;
+    }
+
+    public String next() {
+        return format(nextLong());
+    }
+
+    public long nextLong() {
+        while (true) {
+            long prev = last.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            long next = (prev >>> SEQUENCE_BITS) < now ? now << SEQUENCE_BITS : prev + 1;
+            if (last.compareAndSet(prev, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS))
+                        | (node << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public static String format(long id) {
+        char[] chars = new char[LENGTH];
+        long v = id;
+        for (int i = LENGTH - 1; 0 <= i; i--) {
+            chars[i] = ALPHABET[(int) (v & 31)];
+            v >>>= 5;
+        }
+        return new String(chars);
+    }
+
+}
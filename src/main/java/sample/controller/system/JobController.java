@@ -1,11 +1,20 @@
 package sample.controller.system;
 
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.RequiredArgsConstructor;
+import sample.context.job.JobExecution;
+import sample.context.job.JobLauncher;
 import sample.usecase.admin.AssetAdminService;
+import sample.usecase.admin.AssetAdminService.ShardProgress;
 import sample.usecase.admin.MasterAdminService;
 
 /**
@@ -13,6 +22,14 @@ import sample.usecase.admin.MasterAdminService;
  * <p>
  * the URL after "/system/job" assumes what is carried out from job scheduler,
  * it is necessary to make it inaccessible from the outside in L/B.
+ * <p>
+ * ".../submit" runs the job asynchronously and returns the execution ID at
+ * once, and "/execution/{id}" returns its progress. The re-submission of a
+ * failed job resumes from the checkpoint.
+ * <p>
+ * processDay is not offered as the submitted job, because it forwards the
+ * business day which keys the execution, so its re-submission would forward
+ * the day again.
  */
 @RestController
 @RequestMapping("/system/job")
@@ -20,6 +37,7 @@ import sample.usecase.admin.MasterAdminService;
 public class JobController {
     private final AssetAdminService asset;
     private final MasterAdminService master;
+    private final JobLauncher launcher;
 
     @PostMapping("/daily/processDay")
     public void processDay() {
@@ -36,4 +54,24 @@ public class JobController {
         asset.realizeCashflow();
     }
 
+    @PostMapping("/daily/closingCashOut/submit")
+    public ResponseEntity<Map<String, String>> submitClosingCashOut() {
+        return ResponseEntity.ok(Map.of("id", launcher.submit("closingCashOut", asset::closingCashOut)));
+    }
+
+    @PostMapping("/daily/realizeCashflow/submit")
+    public ResponseEntity<Map<String, String>> submitRealizeCashflow() {
+        return ResponseEntity.ok(Map.of("id", launcher.submit("realizeCashflow", asset::realizeCashflow)));
+    }
+
+    @GetMapping("/daily/closingCashOut/progress")
+    public List<ShardProgress> closingCashOutProgress() {
+        return asset.closingCashOutProgress();
+    }
+
+    @GetMapping("/execution/{id}")
+    public JobExecution execution(@PathVariable String id) {
+        return launcher.load(id);
+    }
+
 }
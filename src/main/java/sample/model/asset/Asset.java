@@ -3,7 +3,10 @@ package sample.model.asset;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
 import lombok.Builder;
+import sample.ActionStatusType;
 import sample.context.orm.OrmRepository;
 import sample.util.Calculator;
 
@@ -15,18 +18,49 @@ public record Asset(
         /** account ID */
         String id) {
 
+    // low: MAX picks one of the balances of the same day, since getOrNew
+    // assumes one row per day.
+    private static final String AVAILABLE_AMOUNT_SQL = "SELECT"
+            + " COALESCE((SELECT MAX(b.amount) FROM cash_balance b"
+            + " WHERE b.account_id = :accountId AND b.currency = :currency AND b.base_day = ("
+            + "SELECT MAX(base_day) FROM cash_balance"
+            + " WHERE account_id = :accountId AND currency = :currency AND base_day <= :day)), 0)"
+            + " + COALESCE((SELECT SUM(cf.amount) FROM cashflow cf"
+            + " WHERE cf.account_id = :accountId AND cf.currency = :currency AND cf.value_day <= :valueDay"
+            + " AND cf.status_type IN (:statusTypes)), 0)"
+            + " - COALESCE((SELECT SUM(cio.abs_amount) FROM cash_in_out cio"
+            + " WHERE cio.account_id = :accountId AND cio.currency = :currency AND cio.withdrawal = TRUE"
+            + " AND cio.status_type IN (:statusTypes)), 0)";
+
+    /**
+     * Returns true when the amount can be withdrawn on the value day.
+     * (it reads ProjectedBalance when the cache is enabled)
+     */
     public boolean canWithdraw(final OrmRepository rep, String currency, BigDecimal absAmount, LocalDate valueDay) {
-        var calc = Calculator.init(CashBalance.getOrNew(rep, id, currency).amount());
-        Cashflow.findUnrealize(rep, id, currency, valueDay).stream()
-                .map(Cashflow::amount)
-                .forEach(calc::add);
-        CashInOut.findUnprocessed(rep, id, currency, true).stream()
-                .map(v -> v.absAmount().negate())
-                .forEach(calc::add);
+        BigDecimal available = rep.dh().cache().enabled()
+                ? ProjectedBalance.of(rep, id, currency).availableAmount(valueDay)
+                : availableAmount(rep, currency, valueDay);
+        var calc = Calculator.init(available);
         calc.add(absAmount.negate());
         return 0 <= calc.decimal().signum();
     }
 
+    /**
+     * Returns the projected available balance on the value day.
+     * <p>
+     * balance (the latest on or before today) + unrealized cashflow until the
+     * value day - unprocessed withdrawal, in one SQL statement.
+     */
+    public BigDecimal availableAmount(final OrmRepository rep, String currency, LocalDate valueDay) {
+        var params = new MapSqlParameterSource()
+                .addValue("accountId", id)
+                .addValue("currency", currency)
+                .addValue("day", rep.dh().time().day())
+                .addValue("valueDay", valueDay)
+                .addValue("statusTypes", ActionStatusType.UNPROCESSED_TYPES.stream().map(Enum::name).toList());
+        return rep.tmplJdbc().queryForObject(AVAILABLE_AMOUNT_SQL, params, BigDecimal.class);
+    }
+
     public static Asset of(String accountId) {
         return Asset.builder()
                 .id(accountId)
@@ -1,27 +1,30 @@
 package sample.model.asset;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 
 import lombok.Builder;
 import sample.context.DomainEntity;
 import sample.context.orm.OrmRepository;
+import sample.model.account.Account.AccountStatusType;
 import sample.model.constraints.AccountId;
 import sample.model.constraints.Amount;
 import sample.model.constraints.Currency;
 import sample.model.constraints.ISODate;
 import sample.model.constraints.ISODateTime;
-import sample.util.Calculator;
 import sample.util.TimePoint;
 
 /**
@@ -48,18 +51,72 @@ public record CashBalance(
     }
 
     /**
-     * low: Use Currency here, but the real number of the currency figures and
-     * fraction processing definition
-     * are managed with DB or the configuration file.
+     * low: The number of the currency figures and the fraction processing are
+     * managed with CurrencyRegistry. (see "sample.currency")
      */
     public CashBalance add(final OrmRepository rep, BigDecimal addAmount) {
-        int scale = java.util.Currency.getInstance(currency).getDefaultFractionDigits();
-        RoundingMode mode = RoundingMode.DOWN;
-        BigDecimal newAmount = Calculator.init(amount).scale(scale, mode).add(addAmount).decimal();
-        return rep.update(this.copyBuilder()
-                .amount(newAmount)
+        CashBalance updated = rep.update(this.copyBuilder()
+                .amount(rep.dh().currency().of(currency).add(amount, addAmount))
                 .updateDate(rep.dh().time().date())
                 .build());
+        ProjectedBalance.balanceChanged(rep, accountId, currency, updated.amount());
+        return updated;
+    }
+
+    /**
+     * Add the amounts to the balances of the day in bulk.
+     * (the balances are carried forward like getOrNew, and written with one
+     * batched upsert)
+     */
+    public static List<CashBalance> addAll(final OrmRepository rep, Map<BalanceKey, BigDecimal> amounts) {
+        if (amounts.isEmpty()) {
+            return List.of();
+        }
+        TimePoint now = rep.dh().time().tp();
+        Map<BalanceKey, CashBalance> latest = findLatest(rep, amounts.keySet(), now.day());
+        List<CashBalance> balances = amounts.entrySet().stream().map(e -> {
+            BalanceKey key = e.getKey();
+            CashBalance prev = latest.get(key);
+            if (prev != null && prev.baseDay().equals(now.day())) {
+                return prev.copyBuilder()
+                        .amount(rep.dh().currency().of(key.currency()).add(prev.amount(), e.getValue()))
+                        .updateDate(now.date())
+                        .build();
+            }
+            return CashBalance.builder() // roll over
+                    .id(rep.dh().uid().generate(CashBalance.class.getSimpleName()))
+                    .accountId(key.accountId())
+                    .baseDay(now.day())
+                    .currency(key.currency())
+                    .amount(rep.dh().currency().of(key.currency())
+                            .add(prev != null ? prev.amount() : BigDecimal.ZERO, e.getValue()))
+                    .updateDate(now.date())
+                    .build();
+        }).toList();
+        rep.saveOrUpdateBatch(balances);
+        balances.forEach(b -> ProjectedBalance.balanceChanged(rep, b.accountId(), b.currency(), b.amount()));
+        return balances;
+    }
+
+    /** The latest balances on or before the day. (one query for all the keys) */
+    private static Map<BalanceKey, CashBalance> findLatest(
+            final OrmRepository rep, Collection<BalanceKey> keys, LocalDate baseDay) {
+        var params = new MapSqlParameterSource()
+                .addValue("accountIds", keys.stream().map(BalanceKey::accountId).distinct().toList())
+                .addValue("baseDay", baseDay);
+        var entity = rep.mapping().entity(CashBalance.class);
+        List<CashBalance> list = rep.tmplJdbc().query(
+                "SELECT " + entity.selectColumns("b") + " FROM cash_balance b"
+                        + " WHERE b.account_id IN (:accountIds) AND b.base_day = ("
+                        + "SELECT MAX(base_day) FROM cash_balance WHERE account_id = b.account_id"
+                        + " AND currency = b.currency AND base_day <= :baseDay)",
+                params, entity.rowMapper());
+        Map<BalanceKey, CashBalance> latest = new HashMap<>();
+        for (CashBalance balance : list) {
+            latest.merge(new BalanceKey(balance.accountId(), balance.currency()), balance,
+                    (a, b) -> a.id().compareTo(b.id()) <= 0 ? a : b);
+        }
+        return latest;
     }
 
     /**
@@ -70,49 +127,99 @@ public record CashBalance(
      */
     public static CashBalance getOrNew(final OrmRepository rep, String accountId, String currency) {
         LocalDate baseDay = rep.dh().time().day();
-        List<CashBalance> list = rep.tmpl().find(CashBalance.class, criteria -> criteria
+        Optional<CashBalance> latest = findLatest(rep, accountId, currency, baseDay);
+        if (latest.isPresent() && latest.get().baseDay().equals(baseDay)) {
+            return latest.get();
+        }
+        return create(rep, accountId, currency, latest.map(CashBalance::amount).orElse(BigDecimal.ZERO));
+    }
+
+    /** The latest balance on or before the day. (one query without the count) */
+    private static Optional<CashBalance> findLatest(
+            final OrmRepository rep, String accountId, String currency, LocalDate baseDay) {
+        Pageable pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "baseDay"));
+        return rep.tmpl().slice(CashBalance.class, criteria -> criteria
                 .and("accountId").is(accountId)
                 .and("currency").is(currency)
-                .and("baseDay").is(baseDay));
+                .and("baseDay").lessThanOrEquals(baseDay), pageable)
+                .stream()
+                .findFirst();
+    }
 
-        if (list.isEmpty()) {
-            return create(rep, accountId, currency);
-        } else {
-            return list.stream()
-                    .max(Comparator.comparing(CashBalance::baseDay))
-                    .orElse(list.get(0));
+    private static CashBalance create(final OrmRepository rep, String accountId, String currency, BigDecimal amount) {
+        TimePoint now = rep.dh().time().tp();
+        var balance = CashBalance.builder()
+                .id(rep.dh().uid().generate(CashBalance.class.getSimpleName()))
+                .accountId(accountId)
+                .baseDay(now.day())
+                .currency(currency)
+                .amount(amount)
+                .updateDate(now.date())
+                .build();
+        if (rep.insertIfAbsent(balance, "accountId", "currency", "baseDay")) {
+            return balance;
         }
+        // The other transaction created it.
+        return findLatest(rep, accountId, currency, now.day()).orElseThrow();
     }
 
-    private static CashBalance create(final OrmRepository rep, String accountId, String currency) {
-        var id = rep.dh().uid().generate(CashBalance.class.getSimpleName());
-        TimePoint now = rep.dh().time().tp();
-        Pageable pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "baseDay"));
-        List<CashBalance> list = rep.tmpl().find(CashBalance.class, criteria -> criteria
-                .and("accountId").is(accountId)
-                .and("currency").is(currency), pageable)
-                .getContent();
+    /**
+     * Carry forward the balances of the active accounts to the day in bulk.
+     * (the balances of the day which already exist, including the ones created
+     * by getOrNew during the rollover, are kept)
+     * <p>
+     * The accounts are read in the keyset chunks of the account ID, so only the
+     * balances of one chunk are held in memory.
+     * low: It does not take the account locks, so call it after the day changes
+     * (the balance of the previous day is not changed by the requests of the day).
+     *
+     * @return the count of the created balances
+     */
+    public static int rollover(final OrmRepository rep, LocalDate baseDay) {
+        return rollover(rep, baseDay, OrmRepository.DEFAULT_BATCH_SIZE);
+    }
 
-        if (list.isEmpty()) {
-            return rep.save(CashBalance.builder()
-                    .id(id)
-                    .accountId(accountId)
-                    .baseDay(now.day())
-                    .currency(currency)
-                    .amount(BigDecimal.ZERO)
-                    .updateDate(now.date())
-                    .build());
-        } else { // roll over
-            var prev = list.get(0);
-            return rep.save(CashBalance.builder()
-                    .id(id)
-                    .accountId(accountId)
-                    .baseDay(now.day())
-                    .currency(currency)
-                    .amount(prev.amount)
-                    .updateDate(now.date())
-                    .build());
+    public static int rollover(final OrmRepository rep, LocalDate baseDay, int chunkSize) {
+        var entity = rep.mapping().entity(CashBalance.class);
+        LocalDateTime now = rep.dh().time().date();
+        int created = 0;
+        String afterId = null;
+        while (true) {
+            var params = new MapSqlParameterSource()
+                    .addValue("statusType", AccountStatusType.NORMAL.name())
+                    .addValue("afterId", afterId)
+                    .addValue("limit", chunkSize);
+            List<String> accountIds = rep.tmplJdbc().queryForList(
+                    "SELECT id FROM account WHERE status_type = :statusType"
+                            + (afterId != null ? " AND id > :afterId" : "")
+                            + " ORDER BY id LIMIT :limit",
+                    params, String.class);
+            if (accountIds.isEmpty()) {
+                return created;
+            }
+            List<CashBalance> balances = rep.tmplJdbc().query(
+                    "SELECT " + entity.selectColumns("b") + " FROM cash_balance b"
+                            + " WHERE b.account_id IN (:accountIds) AND b.base_day = ("
+                            + "SELECT MAX(base_day) FROM cash_balance WHERE account_id = b.account_id"
+                            + " AND currency = b.currency AND base_day <= :baseDay)"
+                            + " AND b.base_day < :baseDay",
+                    new MapSqlParameterSource()
+                            .addValue("accountIds", accountIds)
+                            .addValue("baseDay", baseDay),
+                    entity.rowMapper()).stream()
+                    .map(prev -> prev.copyBuilder()
+                            .id(rep.dh().uid().generate(CashBalance.class.getSimpleName()))
+                            .baseDay(baseDay)
+                            .updateDate(now)
+                            .build())
+                    .toList();
+            created += rep.insertIfAbsentBatch(balances, "accountId", "currency", "baseDay");
+            afterId = accountIds.get(accountIds.size() - 1);
         }
     }
 
+    /** The key of the balance of the day. */
+    public static record BalanceKey(String accountId, String currency) {
+    }
+
 }
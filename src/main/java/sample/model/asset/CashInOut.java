@@ -3,12 +3,17 @@ package sample.model.asset;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 
 import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
@@ -17,6 +22,7 @@ import sample.ActionStatusType;
 import sample.context.DomainEntity;
 import sample.context.DomainHelper;
 import sample.context.Dto;
+import sample.context.orm.OrmMapping.OrmEntity;
 import sample.context.orm.OrmRepository;
 import sample.model.DomainErrorKeys;
 import sample.model.account.FiAccount;
@@ -93,12 +99,20 @@ public record CashInOut(
             v.verify(now.afterEqualsDay(eventDay), AssetErrorKeys.CIO_EVENT_DAY_AFTER_EQUALS_DAY);
         });
 
-        return rep.update(this.copyBuilder()
+        CashInOut processed = rep.update(this.copyBuilder()
                 .statusType(ActionStatusType.PROCESSED)
                 .updateActor(rep.dh().actor().id())
                 .updateDate(now.date())
                 .cashflowId(Cashflow.register(rep, regCf()).id())
                 .build());
+        withdrawalDone(rep);
+        return processed;
+    }
+
+    private void withdrawalDone(final OrmRepository rep) {
+        if (withdrawal) {
+            ProjectedBalance.withdrawalChanged(rep, accountId, currency, absAmount.negate());
+        }
     }
 
     private RegCashflow regCf() {
@@ -124,11 +138,13 @@ public record CashInOut(
             v.verify(now.beforeDay(eventDay), AssetErrorKeys.CIO_EVENT_DAY_BEFORE_EQUALS_DAY);
         });
 
-        return rep.update(this.copyBuilder()
+        CashInOut cancelled = rep.update(this.copyBuilder()
                 .statusType(ActionStatusType.CANCELLED)
                 .updateActor(rep.dh().actor().id())
                 .updateDate(now.date())
                 .build());
+        withdrawalDone(rep);
+        return cancelled;
     }
 
     /**
@@ -196,6 +212,66 @@ public record CashInOut(
                 .and("statusType").in(ActionStatusType.UNPROCESSED_TYPES), sort);
     }
 
+    public static List<CashInOut> findByIds(final OrmRepository rep, Collection<String> ids) {
+        Sort sort = Sort.by(Sort.Direction.ASC, "id");
+        return rep.tmpl().find(CashInOut.class, criteria -> criteria
+                .and("id").in(ids), sort);
+    }
+
+    /** The chunk of findUnprocessed after the ID. (keyset paging for the job) */
+    public static List<CashInOut> findUnprocessed(final OrmRepository rep, String afterId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+        return rep.tmpl().slice(CashInOut.class, criteria -> {
+            var c = criteria
+                    .and("eventDay").is(rep.dh().time().day())
+                    .and("statusType").in(ActionStatusType.UNPROCESSED_TYPES);
+            return afterId != null ? c.and("id").greaterThan(afterId) : c;
+        }, pageable).getContent();
+    }
+
+    /**
+     * The chunk of findUnprocessed of the shard after the ID.
+     * <p>
+     * The shard is the hash of the account ID modulo shards, so all the rows of an
+     * account belong to one shard.
+     */
+    public static List<CashInOut> findUnprocessed(
+            final OrmRepository rep, String afterId, int limit, int shard, int shards) {
+        Optional<String> hash = rep.dialect().hash("c.account_id");
+        if (hash.isEmpty()) {
+            // Filter the chunks in memory. (the dialect without the hash function)
+            String after = afterId;
+            while (true) {
+                List<CashInOut> chunk = findUnprocessed(rep, after, limit);
+                if (chunk.isEmpty()) {
+                    return chunk;
+                }
+                List<CashInOut> owned = chunk.stream()
+                        .filter(cio -> Math.floorMod(cio.accountId().hashCode(), shards) == shard)
+                        .toList();
+                if (!owned.isEmpty()) {
+                    return owned;
+                }
+                after = chunk.get(chunk.size() - 1).id();
+            }
+        }
+        OrmEntity entity = rep.mapping().entity(CashInOut.class);
+        var params = new MapSqlParameterSource()
+                .addValue("eventDay", rep.dh().time().day())
+                .addValue("statusTypes", ActionStatusType.UNPROCESSED_TYPES.stream().map(Enum::name).toList())
+                .addValue("shards", shards)
+                .addValue("shard", shard)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return rep.tmplJdbc().query(
+                "SELECT " + entity.selectColumns("c") + " FROM cash_in_out c"
+                        + " WHERE c.event_day = :eventDay AND c.status_type IN (:statusTypes)"
+                        + " AND MOD(" + hash.get() + ", :shards) = :shard"
+                        + (afterId != null ? " AND c.id > :afterId" : "")
+                        + " ORDER BY c.id LIMIT :limit",
+                params, entity.rowMapper());
+    }
+
     public static List<CashInOut> findUnprocessed(
             final OrmRepository rep, String accountId, String currency, boolean withdrawal) {
         Sort sort = Sort.by(Sort.Direction.ASC, "id");
@@ -234,7 +310,9 @@ public record CashInOut(
         var acc = FiAccount.load(rep, p.accountId(), Remarks.CASH_OUT, p.currency());
         var selfAcc = SelfFiAccount.load(rep, Remarks.CASH_OUT, p.currency());
         String updateActor = dh.actor().id();
-        return rep.save(p.create(now, uid, eventDay, valueDay, acc, selfAcc, updateActor));
+        CashInOut cio = rep.save(p.create(now, uid, eventDay, valueDay, acc, selfAcc, updateActor));
+        ProjectedBalance.withdrawalChanged(rep, cio.accountId(), cio.currency(), cio.absAmount());
+        return cio;
     }
 
     @Builder
@@ -3,11 +3,19 @@ package sample.model.asset;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
@@ -17,6 +25,7 @@ import sample.context.DomainHelper;
 import sample.context.Dto;
 import sample.context.orm.OrmRepository;
 import sample.model.DomainErrorKeys;
+import sample.model.asset.CashBalance.BalanceKey;
 import sample.model.constraints.AccountId;
 import sample.model.constraints.Amount;
 import sample.model.constraints.Category;
@@ -79,10 +88,57 @@ public record Cashflow(
                 .updateActor(rep.dh().actor().id())
                 .updateDate(now.date())
                 .build());
+        ProjectedBalance.unrealizedChanged(rep, accountId, currency, valueDay, amount.negate());
         CashBalance.getOrNew(rep, accountId, currency).add(rep, amount);
         return updatedCashflow;
     }
 
+    /**
+     * Realize the cashflow of the IDs in bulk.
+     * <p>
+     * The amounts are summed per account and currency in one grouped query, added
+     * to the balances in one batched upsert, and the statuses are flipped in one
+     * UPDATE. The cashflow of #findDoRealize (value day is today) which #realize
+     * accepts (not PROCESSING) is realized, and the others are left as they are
+     * and returned, so the caller handles them as the failure of #realize.
+     * low: Lock the accounts of the cashflow before calling it.
+     *
+     * @return the IDs of the cashflow which is not realized
+     */
+    public static List<String> realizeAll(final OrmRepository rep, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        TimePoint now = rep.dh().time().tp();
+        var params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("statusTypes", ActionStatusType.UNPROCESSING_TYPES.stream().map(Enum::name).toList())
+                .addValue("day", now.day());
+        Set<String> realizable = new HashSet<>(rep.tmplJdbc().queryForList(
+                "SELECT id FROM cashflow WHERE id IN (:ids) AND status_type IN (:statusTypes) AND value_day = :day",
+                params, String.class));
+        Map<BalanceKey, BigDecimal> amounts = new LinkedHashMap<>();
+        rep.tmplJdbc().query(
+                "SELECT account_id, currency, SUM(amount) AS amount FROM cashflow"
+                        + " WHERE id IN (:ids) AND status_type IN (:statusTypes) AND value_day = :day"
+                        + " GROUP BY account_id, currency ORDER BY account_id, currency",
+                params, rs -> {
+                    amounts.put(new BalanceKey(rs.getString("account_id"), rs.getString("currency")),
+                            rs.getBigDecimal("amount"));
+                });
+        CashBalance.addAll(rep, amounts);
+        // The realized amounts per value day are not known here.
+        amounts.keySet().forEach(ProjectedBalance.region(rep)::evict);
+        rep.tmplJdbc().update(
+                "UPDATE cashflow SET status_type = :processed, update_actor = :actor, update_date = :now"
+                        + " WHERE id IN (:ids) AND status_type IN (:statusTypes) AND value_day = :day",
+                params
+                        .addValue("processed", ActionStatusType.PROCESSED.name())
+                        .addValue("actor", rep.dh().actor().id())
+                        .addValue("now", now.date()));
+        return ids.stream().filter(id -> !realizable.contains(id)).toList();
+    }
+
     /**
      * Mark error status.
      * low: Actually, Take error reasons in an argument and maintain it.
@@ -124,6 +180,17 @@ public record Cashflow(
                 .and("statusType").in(ActionStatusType.UNPROCESSED_TYPES), sort);
     }
 
+    /** The chunk of findDoRealize after the ID. (keyset paging for the job) */
+    public static List<Cashflow> findDoRealize(final OrmRepository rep, LocalDate valueDay, String afterId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+        return rep.tmpl().slice(Cashflow.class, criteria -> {
+            var c = criteria
+                    .and("valueDay").is(valueDay)
+                    .and("statusType").in(ActionStatusType.UNPROCESSED_TYPES);
+            return afterId != null ? c.and("id").greaterThan(afterId) : c;
+        }, pageable).getContent();
+    }
+
     /**
      * Register cashflow.
      * <p>
@@ -136,6 +203,7 @@ public record Cashflow(
                     "valueDay", "error.Cashflow.beforeEqualsDay");
         });
         Cashflow cf = rep.save(p.create(rep.dh()));
+        ProjectedBalance.unrealizedChanged(rep, cf.accountId(), cf.currency(), cf.valueDay(), cf.amount());
         return cf.canRealize(rep) ? cf.realize(rep) : cf;
     }
 
@@ -0,0 +1,115 @@
+package sample.model.asset;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import sample.ActionStatusType;
+import sample.context.cache.DomainCache.Region;
+import sample.context.orm.OrmRepository;
+import sample.model.asset.CashBalance.BalanceKey;
+
+/**
+ * The projected balance of the account and currency for the withdrawal check.
+ * <p>
+ * It is kept in DomainCache and written through by CashBalance, Cashflow and
+ * CashInOut, when their transaction commits.
+ *
+ * @param balance    the latest balance on or before today
+ * @param unrealized the unrealized cashflow amount per value day
+ * @param withdrawal the unprocessed withdrawal amount
+ */
+public record ProjectedBalance(
+        BigDecimal balance,
+        NavigableMap<LocalDate, BigDecimal> unrealized,
+        BigDecimal withdrawal) {
+
+    public static final String REGION = "ProjectedBalance";
+
+    private static final String LOAD_SQL = "SELECT"
+            + " 'B' AS kind, CAST(NULL AS DATE) AS value_day, MAX(b.amount) AS amount FROM cash_balance b"
+            + " WHERE b.account_id = :accountId AND b.currency = :currency AND b.base_day = ("
+            + "SELECT MAX(base_day) FROM cash_balance"
+            + " WHERE account_id = :accountId AND currency = :currency AND base_day <= :day)"
+            + " UNION ALL SELECT 'C', cf.value_day, SUM(cf.amount) FROM cashflow cf"
+            + " WHERE cf.account_id = :accountId AND cf.currency = :currency"
+            + " AND cf.status_type IN (:statusTypes) GROUP BY cf.value_day"
+            + " UNION ALL SELECT 'W', CAST(NULL AS DATE), SUM(cio.abs_amount) FROM cash_in_out cio"
+            + " WHERE cio.account_id = :accountId AND cio.currency = :currency AND cio.withdrawal = TRUE"
+            + " AND cio.status_type IN (:statusTypes)";
+
+    /** Returns the balance + the unrealized cashflow until the value day - the withdrawal. */
+    public BigDecimal availableAmount(LocalDate valueDay) {
+        BigDecimal amount = balance.subtract(withdrawal);
+        for (BigDecimal v : unrealized.headMap(valueDay, true).values()) {
+            amount = amount.add(v);
+        }
+        return amount;
+    }
+
+    ProjectedBalance balance(BigDecimal balance) {
+        return new ProjectedBalance(balance, unrealized, withdrawal);
+    }
+
+    ProjectedBalance unrealized(LocalDate valueDay, BigDecimal amount) {
+        var map = new TreeMap<>(unrealized);
+        map.merge(valueDay, amount, BigDecimal::add);
+        return new ProjectedBalance(balance, Collections.unmodifiableNavigableMap(map), withdrawal);
+    }
+
+    ProjectedBalance withdrawal(BigDecimal amount) {
+        return new ProjectedBalance(balance, unrealized, withdrawal.add(amount));
+    }
+
+    /** Returns the projected balance from the cache, or loads it in one query. */
+    public static ProjectedBalance of(final OrmRepository rep, String accountId, String currency) {
+        return region(rep).get(new BalanceKey(accountId, currency), key -> load(rep, key));
+    }
+
+    private static ProjectedBalance load(final OrmRepository rep, BalanceKey key) {
+        var params = new MapSqlParameterSource()
+                .addValue("accountId", key.accountId())
+                .addValue("currency", key.currency())
+                .addValue("day", rep.dh().time().day())
+                .addValue("statusTypes", ActionStatusType.UNPROCESSED_TYPES.stream().map(Enum::name).toList());
+        var amounts = new BigDecimal[] { BigDecimal.ZERO, BigDecimal.ZERO }; // balance, withdrawal
+        var unrealized = new TreeMap<LocalDate, BigDecimal>();
+        rep.tmplJdbc().query(LOAD_SQL, params, rs -> {
+            BigDecimal amount = rs.getBigDecimal("amount");
+            if (amount == null) {
+                return;
+            }
+            switch (rs.getString("kind")) {
+                case "B" -> amounts[0] = amount;
+                case "C" -> unrealized.put(rs.getObject("value_day", LocalDate.class), amount);
+                default -> amounts[1] = amount;
+            }
+        });
+        return new ProjectedBalance(amounts[0], Collections.unmodifiableNavigableMap(unrealized), amounts[1]);
+    }
+
+    static Region<BalanceKey, ProjectedBalance> region(final OrmRepository rep) {
+        return rep.dh().cache().region(REGION);
+    }
+
+    /** Reflects the new balance of the day. */
+    static void balanceChanged(final OrmRepository rep, String accountId, String currency, BigDecimal balance) {
+        region(rep).update(new BalanceKey(accountId, currency), p -> p.balance(balance));
+    }
+
+    /** Reflects the change of the unrealized cashflow. */
+    static void unrealizedChanged(
+            final OrmRepository rep, String accountId, String currency, LocalDate valueDay, BigDecimal amount) {
+        region(rep).update(new BalanceKey(accountId, currency), p -> p.unrealized(valueDay, amount));
+    }
+
+    /** Reflects the change of the unprocessed withdrawal. */
+    static void withdrawalChanged(final OrmRepository rep, String accountId, String currency, BigDecimal amount) {
+        region(rep).update(new BalanceKey(accountId, currency), p -> p.withdrawal(amount));
+    }
+
+}
@@ -1,7 +1,9 @@
 package sample.usecase;
 
+import java.time.Duration;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -28,6 +30,8 @@ public class AssetService {
     private final AuditHandler audit;
     private final IdLockHandler idLock;
     private final ApplicationEventPublisher event;
+    @Value("${sample.lock.timeout:5s}")
+    private Duration lockTimeout;
 
     public List<CashInOut> findUnprocessedCashOut() {
         final String accId = actor().id();
@@ -43,11 +47,12 @@ public class AssetService {
     public String withdraw(final RegCashOut p) {
         return audit.audit("Requesting a withdrawal", () -> {
             // low: Take account ID lock (WRITE) and transaction and handle transfer
-            CashInOut cio = TxTemplate.of(txm).writeIdLock(idLock, actor().id()).tx(() -> {
-                return CashInOut.withdraw(rep, p);
+            CashInOut cio = TxTemplate.of(txm).writeIdLock(idLock, actor().id(), lockTimeout).tx(() -> {
+                CashInOut v = CashInOut.withdraw(rep, p);
+                // low: this service e-mail it and notify user. (written to the outbox in this transaction)
+                this.event.publishEvent(AppMailEvent.of(AppMailType.FINISH_REQUEST_WITHDRAW, v));
+                return v;
             });
-            // low: this service e-mail it and notify user.
-            this.event.publishEvent(AppMailEvent.of(AppMailType.FINISH_REQUEST_WITHDRAW, cio));
             return cio.id();
         });
     }
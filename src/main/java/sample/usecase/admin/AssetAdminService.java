@@ -1,14 +1,34 @@
 package sample.usecase.admin;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import sample.context.InvocationException;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
 import sample.context.audit.AuditHandler;
+import sample.context.job.JobLauncher.JobContext;
 import sample.context.lock.IdLockHandler;
+import sample.context.lock.IdLockHandler.IdLockPair;
 import sample.context.lock.IdLockHandler.LockType;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
@@ -22,12 +42,24 @@ import sample.model.asset.Cashflow;
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class AssetAdminService {
+public class AssetAdminService implements MeterBinder {
 
     private final OrmRepository rep;
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final IdLockHandler idLock;
+    @Value("${sample.lock.timeout:5s}")
+    private Duration lockTimeout;
+    @Value("${sample.job.closing.parallelism:1}")
+    private int closingParallelism;
+    @Value("${sample.job.closing.chunk-size:${sample.job.chunk-size:100}}")
+    private int closingChunkSize;
+    @Value("${sample.job.chunk-size:100}")
+    private int chunkSize;
+    @Value("${sample.job.realize.bulk:false}")
+    private boolean realizeBulk;
+    private volatile List<ShardProgress> closingProgress = List.of();
+    private ExecutorService closingExecutor;
 
     public List<CashInOut> findCashInOut(final FindCashInOut p) {
         return TxTemplate.of(txm).readOnly().tx(() -> {
@@ -35,61 +67,323 @@ public class AssetAdminService {
         });
     }
 
+    /**
+     * Close the unprocessed cash out of the day.
+     * (it runs in parallel when "sample.job.closing.parallelism" is over 1)
+     */
     public void closingCashOut() {
         audit.audit("Closing cash out.", () -> {
-            TxTemplate.of(txm).tx(() -> {
-                closingCashOutInTx();
-            });
+            if (1 < closingParallelism) {
+                closingCashOutParallel(closingParallelism);
+            } else {
+                TxTemplate.of(txm).tx(() -> {
+                    closingCashOutInTx();
+                });
+            }
+        });
+    }
+
+    /**
+     * Close the unprocessed cash out of the day as the resumable job.
+     * (each chunk is committed with the checkpoint, see JobLauncher)
+     */
+    public void closingCashOut(final JobContext ctx) {
+        audit.audit("Closing cash out.", () -> {
+            while (true) {
+                List<CashInOut> chunk = TxTemplate.of(txm).readOnly().tx(() -> {
+                    return CashInOut.findUnprocessed(rep, ctx.checkpoint(), closingChunkSize);
+                });
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                String lastId = chunk.get(chunk.size() - 1).id();
+                closingCashOutChunk(chunk, result -> ctx.checkpoint(lastId, result.processed(), result.failed()));
+            }
         });
     }
 
+    /** Returns the progress of each shard of the last parallel closing. */
+    public List<ShardProgress> closingCashOutProgress() {
+        return closingProgress;
+    }
+
+    /** Exports the progress of each shard as "sample.job.closing.shard". */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < closingParallelism; i++) {
+            final int shard = i;
+            shardGauge(registry, shard, "processed", ShardProgress::processed);
+            shardGauge(registry, shard, "failed", ShardProgress::failed);
+            shardGauge(registry, shard, "skipped", ShardProgress::skipped);
+        }
+    }
+
+    private void shardGauge(MeterRegistry registry, int shard, String result,
+            Function<ShardProgress, AtomicLong> counter) {
+        Gauge.builder("sample.job.closing.shard", this, s -> {
+            List<ShardProgress> progress = s.closingProgress;
+            return shard < progress.size() ? counter.apply(progress.get(shard)).get() : 0;
+        }).tag("shard", String.valueOf(shard)).tag("result", result).register(registry);
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (closingExecutor != null) {
+            closingExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Close in keyset chunks, so no cursor is left open while the rows are
+     * updated on the same connection.
+     * low: It is desirable to handle it to an account unit in a mass.
+     */
     private void closingCashOutInTx() {
-        // low: It is desirable to handle it to an account unit in a mass.
-        // low: Divide paging by id sort and carry it out for a difference
-        // because heaps overflow when just do it in large quantities.
-        CashInOut.findUnprocessed(rep).forEach(cio -> {
-            idLock.call(cio.accountId(), LockType.WRITE, () -> {
-                try {
-                    cio.process(rep);
-                } catch (Exception e) {
-                    log.error("[" + cio.id() + "] Failure closing cash out.", e);
+        String afterId = null;
+        while (true) {
+            List<CashInOut> chunk = CashInOut.findUnprocessed(rep, afterId, closingChunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            chunk.forEach(this::closingCashOut);
+            afterId = chunk.get(chunk.size() - 1).id();
+        }
+    }
+
+    private void closingCashOut(CashInOut cio) {
+        idLock.call(cio.accountId(), LockType.WRITE, () -> {
+            closingCashOutOrError(cio);
+        });
+    }
+
+    private boolean closingCashOutOrError(CashInOut cio) {
+        try {
+            cio.process(rep);
+            return true;
+        } catch (Exception e) {
+            log.error("[" + cio.id() + "] Failure closing cash out.", e);
+            try {
+                cio.error(rep);
+            } catch (Exception ex) {
+                // low: Keep it for a mention only for logger which is a double obstacle.
+                // (probably DB is caused)
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Close in parallel.
+     * <p>
+     * The targets are partitioned by the hash of the account ID, so an account is
+     * handled by only one worker. Each worker reads its own shard in keyset chunks
+     * and commits every chunk in its own transaction under the WRITE locks of the
+     * accounts in the chunk, so a failure rolls back only the chunk.
+     */
+    private void closingCashOutParallel(int shards) {
+        List<ShardProgress> progress = IntStream.range(0, shards)
+                .mapToObj(ShardProgress::new)
+                .toList();
+        this.closingProgress = progress;
+
+        Actor actor = ActorSession.actor();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                final int shard = i;
+                futures.add(closingExecutor().submit(() -> {
+                    ActorSession.bind(actor);
                     try {
-                        cio.error(rep);
-                    } catch (Exception ex) {
-                        // low: Keep it for a mention only for logger which is a double obstacle.
-                        // (probably DB is caused)
+                        closingCashOutShard(shard, shards, progress.get(shard));
+                    } finally {
+                        ActorSession.unbind();
                     }
-                }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvocationException("Closing cash out is interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new InvocationException("Failure closing cash out.", e.getCause());
+        }
+        progress.forEach(p -> log.info("Closing cash out {}", p));
+    }
+
+    private synchronized ExecutorService closingExecutor() {
+        if (closingExecutor == null) {
+            closingExecutor = Executors.newFixedThreadPool(closingParallelism);
+        }
+        return closingExecutor;
+    }
+
+    private void closingCashOutShard(int shard, int shards, ShardProgress progress) {
+        String lastId = null;
+        while (true) {
+            final String after = lastId;
+            List<CashInOut> chunk = TxTemplate.of(txm).readOnly().tx(() -> {
+                return CashInOut.findUnprocessed(rep, after, closingChunkSize, shard, shards);
             });
+            if (chunk.isEmpty()) {
+                return;
+            }
+            lastId = chunk.get(chunk.size() - 1).id();
+            try {
+                ChunkResult result = closingCashOutChunk(chunk, r -> {
+                });
+                progress.processed().addAndGet(result.processed());
+                progress.failed().addAndGet(result.failed());
+                progress.skipped().addAndGet(result.skipped());
+            } catch (Exception e) {
+                log.error("Failure closing cash out chunk. [" + chunk.get(0).id() + "-]", e);
+                progress.failed().addAndGet(chunk.size());
+            }
+        }
+    }
+
+    /**
+     * Close the chunk in a transaction under the WRITE locks of its accounts.
+     * (inTx is called with the result before the commit)
+     */
+    private ChunkResult closingCashOutChunk(List<CashInOut> chunk, Consumer<ChunkResult> inTx) {
+        List<IdLockPair> locks = chunk.stream()
+                .map(CashInOut::accountId)
+                .distinct()
+                .map(accountId -> new IdLockPair(accountId, LockType.WRITE))
+                .toList();
+        return TxTemplate.of(txm).idLocks(idLock, locks, lockTimeout).tx(() -> {
+            long processed = 0;
+            long failed = 0;
+            long skipped = 0;
+            for (CashInOut cio : CashInOut.findByIds(rep, chunk.stream().map(CashInOut::id).toList())) {
+                if (!cio.statusType().isUnprocessed()) {
+                    skipped++;
+                } else if (closingCashOutOrError(cio)) {
+                    processed++;
+                } else {
+                    failed++;
+                }
+            }
+            var result = new ChunkResult(processed, failed, skipped);
+            inTx.accept(result);
+            return result;
         });
     }
 
+    /** The result of a chunk. */
+    private static record ChunkResult(long processed, long failed, long skipped) {
+    }
+
+    /** The progress of a shard of the parallel job. */
+    public static record ShardProgress(
+            int shard,
+            AtomicLong processed,
+            AtomicLong failed,
+            AtomicLong skipped) {
+
+        public ShardProgress(int shard) {
+            this(shard, new AtomicLong(), new AtomicLong(), new AtomicLong());
+        }
+    }
+
     /**
      * Reflect the cashflow that reached an account day in the balance.
+     * (it runs set-based per chunk when "sample.job.realize.bulk" is true)
      */
     public void realizeCashflow() {
         audit.audit("Realize cashflow.", () -> {
-            TxTemplate.of(txm).tx(() -> realizeCashflowInTx());
+            if (realizeBulk) {
+                realizeCashflowChunks(null, (lastId, processed, failed) -> {
+                });
+            } else {
+                TxTemplate.of(txm).tx(() -> realizeCashflowInTx());
+            }
+        });
+    }
+
+    /**
+     * Reflect the cashflow as the resumable job.
+     * (each chunk is committed with the checkpoint, see JobLauncher)
+     */
+    public void realizeCashflow(final JobContext ctx) {
+        audit.audit("Realize cashflow.", () -> {
+            realizeCashflowChunks(ctx.checkpoint(), ctx::checkpoint);
         });
     }
 
+    private void realizeCashflowChunks(String afterId, ChunkCheckpoint checkpoint) {
+        var day = rep.dh().time().day();
+        String lastId = afterId;
+        while (true) {
+            final String after = lastId;
+            List<Cashflow> chunk = TxTemplate.of(txm).readOnly().tx(() -> {
+                return Cashflow.findDoRealize(rep, day, after, chunkSize);
+            });
+            if (chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).id();
+            final String chunkLastId = lastId;
+            List<IdLockPair> locks = chunk.stream()
+                    .map(Cashflow::accountId)
+                    .distinct()
+                    .map(accountId -> new IdLockPair(accountId, LockType.WRITE))
+                    .toList();
+            TxTemplate.of(txm).idLocks(idLock, locks, lockTimeout).tx(() -> {
+                if (realizeBulk) {
+                    List<String> skipped = Cashflow.realizeAll(rep, chunk.stream().map(Cashflow::id).toList());
+                    // The skipped cashflow is marked as the one by one mode does.
+                    for (String id : skipped) {
+                        realizeCashflowOrError(Cashflow.load(rep, id));
+                    }
+                    checkpoint.accept(chunkLastId, chunk.size() - skipped.size(), skipped.size());
+                    return;
+                }
+                long processed = 0;
+                long failed = 0;
+                for (Cashflow cf : chunk) {
+                    // Reload under the lock, since the chunk was read before it.
+                    if (realizeCashflowOrError(Cashflow.load(rep, cf.id()))) {
+                        processed++;
+                    } else {
+                        failed++;
+                    }
+                }
+                checkpoint.accept(chunkLastId, processed, failed);
+            });
+        }
+    }
+
+    /** The callback of the committed chunk. (called in its transaction) */
+    @FunctionalInterface
+    private static interface ChunkCheckpoint {
+        void accept(String lastId, long processed, long failed);
+    }
+
     private void realizeCashflowInTx() {
         // low: Expect the practice after the rollover day.
         var day = rep.dh().time().day();
         for (final Cashflow cf : Cashflow.findDoRealize(rep, day)) {
             idLock.call(cf.accountId(), LockType.WRITE, () -> {
-                try {
-                    cf.realize(rep);
-                } catch (Exception e) {
-                    log.error("[" + cf.id() + "] Failure realize cashflow.", e);
-                    try {
-                        cf.error(rep);
-                    } catch (Exception ex) {
-                    }
-                }
-                return null;
+                return realizeCashflowOrError(cf);
             });
         }
     }
 
+    private boolean realizeCashflowOrError(Cashflow cf) {
+        try {
+            cf.realize(rep);
+            return true;
+        } catch (Exception e) {
+            log.error("[" + cf.id() + "] Failure realize cashflow.", e);
+            try {
+                cf.error(rep);
+            } catch (Exception ex) {
+            }
+            return false;
+        }
+    }
+
 }
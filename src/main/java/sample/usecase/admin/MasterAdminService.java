@@ -7,6 +7,8 @@ import lombok.RequiredArgsConstructor;
 import sample.context.Timestamper;
 import sample.context.audit.AuditHandler;
 import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.asset.CashBalance;
 
 /**
  * The use case processing for the master domain in the organization.
@@ -15,14 +17,22 @@ import sample.context.orm.OrmRepository;
 @RequiredArgsConstructor
 public class MasterAdminService {
     private final OrmRepository rep;
-    @SuppressWarnings("unused")
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
 
+    /**
+     * Forward the business day.
+     * (the balances of the active accounts are carried forward to the day in bulk
+     * after the day changes, so no request changes the copied balance; the one
+     * which a request of the day created with getOrNew first is kept)
+     */
     public void processDay() {
         audit.audit("Forward day.", () -> {
             Timestamper time = rep.dh().time();
             time.daySet(time.dayPlus(1));
+            TxTemplate.of(txm).tx(() -> {
+                CashBalance.rollover(rep, time.day());
+            });
         });
     }
 
@@ -0,0 +1,123 @@
+package sample.usecase.mail;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import lombok.Builder;
+import sample.context.DomainEntity;
+import sample.context.orm.OrmRepository;
+import sample.usecase.event.AppMailEvent;
+import sample.usecase.event.type.AppMailType;
+
+/**
+ * The mail event written in the transaction of the business data.
+ * <p>
+ * The event keeps only the ID of the entity (refId), and
+ * MailOutboxDispatcher reloads it on the delivery. The row is PENDING until
+ * it is sent, and FAILED when the attempts are exhausted.
+ */
+@Table("MAIL_OUTBOX")
+@Builder
+public record MailOutbox(
+        @Id String id,
+        AppMailType mailType,
+        String refId,
+        OutboxStatusType statusType,
+        int attempts,
+        LocalDateTime nextAttemptDate,
+        String lastError,
+        LocalDateTime registerDate,
+        LocalDateTime updateDate) implements DomainEntity {
+
+    /**
+     * Registers the event in the current transaction.
+     * The value of the event must be DomainEntity.
+     */
+    public static MailOutbox register(final OrmRepository rep, final AppMailEvent<?> event) {
+        if (!(event.value() instanceof DomainEntity entity)) {
+            throw new IllegalArgumentException("Unsupported email value. [" + event + "]");
+        }
+        LocalDateTime now = rep.dh().time().date();
+        return rep.save(MailOutbox.builder()
+                .id(rep.dh().uid().generate(MailOutbox.class.getSimpleName()))
+                .mailType(event.mailType())
+                .refId(entity.id().toString())
+                .statusType(OutboxStatusType.PENDING)
+                .attempts(0)
+                .nextAttemptDate(now)
+                .registerDate(now)
+                .updateDate(now)
+                .build());
+    }
+
+    /** Returns the PENDING events whose next attempt has come. (in the order of the attempt) */
+    public static List<MailOutbox> findDue(final OrmRepository rep, LocalDateTime now, int limit) {
+        Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "nextAttemptDate", "id"));
+        return rep.tmpl().slice(MailOutbox.class, criteria -> criteria
+                .and("statusType").is(OutboxStatusType.PENDING)
+                .and("nextAttemptDate").lessThanOrEquals(now), pageable).getContent();
+    }
+
+    /**
+     * Claims the event until the lease expires.
+     * <p>
+     * It fails when the other node claimed it first, so one event is attempted
+     * by one node at a time. (the expired lease is taken over by #findDue)
+     */
+    public boolean claim(final OrmRepository rep, Duration lease) {
+        LocalDateTime now = rep.dh().time().date();
+        return rep.tmplJdbc().update(
+                "UPDATE mail_outbox SET next_attempt_date = :lease, update_date = :now"
+                        + " WHERE id = :id AND status_type = :status AND next_attempt_date = :nextAttemptDate",
+                Map.of("lease", now.plus(lease), "now", now, "id", id,
+                        "status", OutboxStatusType.PENDING.name(), "nextAttemptDate", nextAttemptDate)) == 1;
+    }
+
+    /** Marks the event as sent. */
+    public static void sent(final OrmRepository rep, String id) {
+        LocalDateTime now = rep.dh().time().date();
+        rep.tmplJdbc().update(
+                "UPDATE mail_outbox SET status_type = :status, attempts = attempts + 1, last_error = NULL,"
+                        + " update_date = :now WHERE id = :id",
+                Map.of("status", OutboxStatusType.SENT.name(), "now", now, "id", id));
+    }
+
+    /**
+     * Records the failure of the attempt.
+     * <p>
+     * The next attempt waits backoff * 2^attempts (up to maxBackoff), and the
+     * event is FAILED after maxAttempts.
+     */
+    public void failed(final OrmRepository rep, String error, int maxAttempts, Duration backoff,
+            Duration maxBackoff) {
+        LocalDateTime now = rep.dh().time().date();
+        int attempted = attempts + 1;
+        Duration wait = backoff.multipliedBy(1L << Math.min(attempts, 20));
+        rep.tmplJdbc().update(
+                "UPDATE mail_outbox SET status_type = :status, attempts = :attempts, next_attempt_date = :next,"
+                        + " last_error = :error, update_date = :now WHERE id = :id",
+                new MapSqlParameterSource()
+                        .addValue("status", (maxAttempts <= attempted ? OutboxStatusType.FAILED : OutboxStatusType.PENDING).name())
+                        .addValue("attempts", attempted)
+                        .addValue("next", now.plus(wait.compareTo(maxBackoff) < 0 ? wait : maxBackoff))
+                        .addValue("error", error != null && 256 < error.length() ? error.substring(0, 256) : error)
+                        .addValue("now", now)
+                        .addValue("id", id));
+    }
+
+    public static enum OutboxStatusType {
+        PENDING,
+        SENT,
+        FAILED;
+    }
+
+}
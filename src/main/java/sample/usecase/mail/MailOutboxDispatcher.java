@@ -0,0 +1,170 @@
+package sample.usecase.mail;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+
+/**
+ * Delivers the mail events of MAIL_OUTBOX in the background.
+ * <p>
+ * The due events are read in batches of "sample.mail.outbox.batch-size"
+ * every "sample.mail.outbox.poll-interval". Each event is claimed for
+ * "sample.mail.outbox.lease" and delivered outside the transaction; the
+ * failure is retried with the exponential backoff until
+ * "sample.mail.outbox.max-attempts". (at-least-once delivery)
+ */
+@Component
+@Slf4j
+public class MailOutboxDispatcher implements MeterBinder {
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final ServiceMailDeliver deliver;
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private ScheduledExecutorService executor;
+
+    public MailOutboxDispatcher(
+            OrmRepository rep,
+            PlatformTransactionManager txm,
+            ServiceMailDeliver deliver,
+            @Value("${sample.mail.outbox.enabled:true}") boolean enabled,
+            @Value("${sample.mail.outbox.poll-interval:1s}") Duration pollInterval,
+            @Value("${sample.mail.outbox.batch-size:100}") int batchSize,
+            @Value("${sample.mail.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${sample.mail.outbox.backoff:5s}") Duration backoff,
+            @Value("${sample.mail.outbox.max-backoff:10m}") Duration maxBackoff,
+            @Value("${sample.mail.outbox.lease:1m}") Duration lease) {
+        this.rep = rep;
+        this.txm = txm;
+        this.deliver = deliver;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mail-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            while (batchSize <= dispatch()) {
+                // The batch was full, so the next one is read without the wait.
+            }
+        } catch (Exception e) {
+            log.error("Failure dispatch mail outbox.", e);
+        }
+    }
+
+    /**
+     * Delivers the due events of one batch.
+     * <p>
+     * The mails of the batch are sent concurrently by MailHandler, and each
+     * event is marked after its mail completes.
+     *
+     * @return the count of the read events
+     */
+    public int dispatch() {
+        List<MailOutbox> due = TxTemplate.of(txm).readOnly().tx(() -> {
+            return MailOutbox.findDue(rep, rep.dh().time().date(), batchSize);
+        });
+        Map<MailOutbox, CompletableFuture<Void>> sending = new LinkedHashMap<>();
+        for (MailOutbox outbox : due) {
+            if (!TxTemplate.of(txm).tx(() -> outbox.claim(rep, lease))) {
+                continue; // claimed by the other node
+            }
+            try {
+                sending.put(outbox, deliver.deliver(outbox));
+            } catch (Exception e) {
+                sending.put(outbox, CompletableFuture.failedFuture(e));
+            }
+        }
+        sending.forEach((outbox, future) -> {
+            try {
+                future.get(lease.toMillis(), TimeUnit.MILLISECONDS);
+                TxTemplate.of(txm).tx(() -> MailOutbox.sent(rep, outbox.id()));
+                sent.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                log.warn("[" + outbox.id() + "] Failure deliver mail " + outbox.mailType() + ".", cause);
+                TxTemplate.of(txm).tx(() -> outbox.failed(rep, cause.toString(), maxAttempts, backoff, maxBackoff));
+                (outbox.attempts() + 1 < maxAttempts ? retried : failed).increment();
+            }
+        });
+        return due.size();
+    }
+
+    public long sent() {
+        return sent.sum();
+    }
+
+    public long retried() {
+        return retried.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("sample.mail.outbox", sent, LongAdder::sum)
+                .tag("result", "sent").register(registry);
+        FunctionCounter.builder("sample.mail.outbox", retried, LongAdder::sum)
+                .tag("result", "retried").register(registry);
+        FunctionCounter.builder("sample.mail.outbox", failed, LongAdder::sum)
+                .tag("result", "failed").register(registry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package sample.usecase.mail;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.ConcurrentLruCache;
+
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.account.Account;
+
+/**
+ * The read-through cache of the mail recipients of the accounts.
+ * <p>
+ * The recipient is kept for "sample.mail.recipient.ttl" in the LRU of
+ * "sample.mail.recipient.cache-size", so the change of the account is
+ * reflected after the TTL. (0 size disables the cache)
+ * low: The account is not changed by the use cases of this sample, so the
+ * entry is not evicted on the change.
+ */
+@Component
+public class MailRecipients {
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final long ttlNanos;
+    private final ConcurrentLruCache<String, CachedRecipient> recipients;
+
+    public MailRecipients(
+            OrmRepository rep,
+            PlatformTransactionManager txm,
+            @Value("${sample.mail.recipient.cache-size:1024}") int cacheSize,
+            @Value("${sample.mail.recipient.ttl:10m}") Duration ttl) {
+        this.rep = rep;
+        this.txm = txm;
+        this.ttlNanos = ttl.toNanos();
+        this.recipients = new ConcurrentLruCache<>(cacheSize, this::load);
+    }
+
+    public MailRecipient get(String accountId) {
+        CachedRecipient v = recipients.get(accountId);
+        if (ttlNanos <= System.nanoTime() - v.loaded()) {
+            recipients.remove(accountId);
+            v = recipients.get(accountId);
+        }
+        return v.recipient();
+    }
+
+    private CachedRecipient load(String accountId) {
+        Account account = TxTemplate.of(txm).readOnly().tx(() -> Account.load(rep, accountId));
+        return new CachedRecipient(new MailRecipient(account.id(), account.name(), account.mail()), System.nanoTime());
+    }
+
+    /** The name and the mail address of the account. */
+    public static record MailRecipient(String accountId, String name, String mail) {
+    }
+
+    private static record CachedRecipient(MailRecipient recipient, long loaded) {
+    }
+
+}
@@ -1,69 +1,74 @@
 package sample.usecase.mail;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 
 import lombok.RequiredArgsConstructor;
-import sample.context.InvocationException;
 import sample.context.mail.MailHandler;
 import sample.context.mail.MailHandler.SendMail;
+import sample.context.mail.MailTemplate;
 import sample.context.orm.OrmRepository;
 import sample.context.orm.TxTemplate;
-import sample.model.account.Account;
 import sample.model.asset.CashInOut;
 import sample.usecase.event.AppMailEvent;
+import sample.usecase.mail.MailRecipients.MailRecipient;
 
 /**
  * Mail delivery service of the application layer.
  * <p>
- * Manages transactions independently, please be careful not to call it within
- * a service transaction.
+ * AppMailEvent is written to MAIL_OUTBOX in the transaction of the publisher,
+ * and MailOutboxDispatcher delivers it through #deliver in the background.
+ * <p>
+ * The delivery manages transactions independently, please be careful not to
+ * call it within a service transaction. The templates are compiled once, and
+ * the recipients are read through MailRecipients.
  */
 @Component
 @RequiredArgsConstructor
 public class ServiceMailDeliver {
+    // low: Actual title and text are acquired from setting information
+    private static final MailTemplate FINISH_REQUEST_WITHDRAW_SUBJECT = MailTemplate.compile(
+            "[{id}] Notification of withdrawal request acceptance");
+    private static final MailTemplate FINISH_REQUEST_WITHDRAW_BODY = MailTemplate.compile("{name} …");
+
     private final OrmRepository rep;
     private final PlatformTransactionManager tx;
     private final MailHandler mail;
+    private final MailRecipients recipients;
 
+    /** Writes the event to the outbox. (publish it in the service transaction) */
     @EventListener(AppMailEvent.class)
     public void handleEvent(AppMailEvent<?> event) {
-        switch (event.mailType()) {
-            case FINISH_REQUEST_WITHDRAW -> sendFinishRequestWithdraw((CashInOut) event.value());
-            default -> throw new IllegalStateException("Unsupported email type. [" + event + "]");
-        }
+        TxTemplate.of(tx).propagation(Propagation.MANDATORY).tx(() -> MailOutbox.register(rep, event));
+    }
+
+    /** Sends the mail of the outbox event. (completes when MailHandler sent it) */
+    public CompletableFuture<Void> deliver(final MailOutbox outbox) {
+        return switch (outbox.mailType()) {
+            case FINISH_REQUEST_WITHDRAW -> sendFinishRequestWithdraw(
+                    TxTemplate.of(tx).readOnly().tx(() -> rep.load(CashInOut.class, outbox.refId())));
+            default -> throw new IllegalStateException("Unsupported email type. [" + outbox + "]");
+        };
     }
 
-    public void sendFinishRequestWithdraw(final CashInOut cio) {
-        send(cio.accountId(), account -> {
-            // low: Actual title and text are acquired from setting information
-            String subject = "[" + cio.id() + "] Notification of withdrawal request acceptance";
-            String body = "{name} …";
-            Map<String, String> bodyArgs = new HashMap<>();
-            bodyArgs.put("name", account.name());
-            return new SendMail(account.mail(), subject, body, bodyArgs);
-        });
+    public CompletableFuture<Void> sendFinishRequestWithdraw(final CashInOut cio) {
+        return send(cio.accountId(), recipient -> new SendMail(recipient.mail(),
+                FINISH_REQUEST_WITHDRAW_SUBJECT.render(name -> "id".equals(name) ? cio.id() : null),
+                FINISH_REQUEST_WITHDRAW_BODY.render(name -> "name".equals(name) ? recipient.name() : null),
+                Map.of()));
     }
 
-    private void send(final String accountId, final ServiceMailCreator creator) {
-        TxTemplate.of(tx).tx(() -> {
-            try {
-                mail.send(creator.create(Account.load(rep, accountId)));
-                return null;
-            } catch (RuntimeException e) {
-                throw (RuntimeException) e;
-            } catch (Exception e) {
-                throw new InvocationException("errors.MailException", e);
-            }
-        });
+    private CompletableFuture<Void> send(final String accountId, final ServiceMailCreator creator) {
+        return mail.sendAsync(creator.create(recipients.get(accountId)));
     }
 
     public static interface ServiceMailCreator {
-        SendMail create(final Account account);
+        SendMail create(final MailRecipient recipient);
     }
 
 }
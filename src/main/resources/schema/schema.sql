@@ -73,4 +73,87 @@ CREATE TABLE IF NOT EXISTS cash_in_out (
     update_date TIMESTAMP NOT NULL,
     cashflow_id VARCHAR(32)
 );
- 
\ No newline at end of file
+
+-- ID lock lease table
+CREATE TABLE IF NOT EXISTS id_lock (
+    id VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(64),
+    expire_date TIMESTAMP
+);
+
+-- ID sequence table
+CREATE TABLE IF NOT EXISTS id_sequence (
+    id VARCHAR(32) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+-- Indexes of the asset finders (see FinderIndexTest)
+-- CashBalance.getOrNew (one balance per account, currency and day)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_cash_balance_day ON cash_balance (account_id, currency, base_day);
+-- Cashflow.findDoRealize
+CREATE INDEX IF NOT EXISTS idx_cashflow_value_day ON cashflow (value_day, status_type);
+-- Cashflow.findUnrealize
+CREATE INDEX IF NOT EXISTS idx_cashflow_account ON cashflow (account_id, currency, value_day, status_type);
+-- CashInOut.findUnprocessed (closing of the day), CashInOut.find
+CREATE INDEX IF NOT EXISTS idx_cash_in_out_event_day ON cash_in_out (event_day, status_type);
+-- CashInOut.findUnprocessed (of the account)
+CREATE INDEX IF NOT EXISTS idx_cash_in_out_account ON cash_in_out (account_id, status_type, currency, withdrawal);
+
+-- Execution table of the daily jobs (see JobLauncher)
+CREATE TABLE IF NOT EXISTS job_execution (
+    id VARCHAR(32) PRIMARY KEY,
+    job_name VARCHAR(64) NOT NULL,
+    base_day DATE NOT NULL,
+    status_type VARCHAR(20) NOT NULL,
+    checkpoint VARCHAR(32),
+    processed BIGINT NOT NULL,
+    failed BIGINT NOT NULL,
+    message VARCHAR(256),
+    start_date TIMESTAMP NOT NULL,
+    update_date TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_job_execution ON job_execution (job_name, base_day);
+
+-- Audit tables of AuditHandler (see AuditWriter)
+-- The start and the completion of a use case are separate rows of the same audit_id,
+-- so the use case without the completion row is unresponsive.
+CREATE TABLE IF NOT EXISTS audit_actor (
+    id VARCHAR(32) PRIMARY KEY,
+    audit_id VARCHAR(32) NOT NULL,
+    actor_id VARCHAR(32),
+    role_type VARCHAR(20) NOT NULL,
+    source VARCHAR(64),
+    message VARCHAR(256) NOT NULL,
+    status_type VARCHAR(20) NOT NULL,
+    elapsed_ms BIGINT,
+    record_date TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_actor_audit ON audit_actor (audit_id);
+
+CREATE TABLE IF NOT EXISTS audit_event (
+    id VARCHAR(32) PRIMARY KEY,
+    audit_id VARCHAR(32) NOT NULL,
+    message VARCHAR(256) NOT NULL,
+    status_type VARCHAR(20) NOT NULL,
+    elapsed_ms BIGINT,
+    record_date TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_event_audit ON audit_event (audit_id);
+
+-- Transactional outbox table of the mail events (see MailOutboxDispatcher)
+CREATE TABLE IF NOT EXISTS mail_outbox (
+    id VARCHAR(32) PRIMARY KEY,
+    mail_type VARCHAR(32) NOT NULL,
+    ref_id VARCHAR(32) NOT NULL,
+    status_type VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL,
+    next_attempt_date TIMESTAMP NOT NULL,
+    last_error VARCHAR(256),
+    register_date TIMESTAMP NOT NULL,
+    update_date TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_mail_outbox_due ON mail_outbox (status_type, next_attempt_date);
@@ -0,0 +1,43 @@
+package sample.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CurrencyRegistryTest {
+
+    @Test
+    public void of() {
+        var registry = new CurrencyRegistry(List.of("JPY:1"), RoundingMode.HALF_UP);
+        assertEquals(2, registry.of("USD").scale());
+        assertEquals(1, registry.of("JPY").scale());
+        assertEquals(RoundingMode.HALF_UP, registry.of("USD").mode());
+        for (String currency : List.of("usd", "XX")) {
+            try {
+                registry.of(currency);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        try {
+            new CurrencyRegistry(List.of("JPY"), RoundingMode.DOWN);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void add() {
+        var usd = CurrencyRegistry.DEFAULT.of("USD");
+        assertEquals(new BigDecimal("33.04"), usd.add(new BigDecimal("21.53"), new BigDecimal("11.516")));
+        assertEquals(new BigDecimal("-8.47"), usd.add(new BigDecimal("33.04"), new BigDecimal("-41.51")));
+        assertEquals(new BigDecimal("1000"), CurrencyRegistry.DEFAULT.of("JPY")
+                .add(new BigDecimal("999.9"), new BigDecimal("0.5")));
+    }
+
+}
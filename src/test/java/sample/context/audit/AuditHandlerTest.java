@@ -0,0 +1,62 @@
+package sample.context.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.context.ErrorKeys;
+import sample.context.ValidationException;
+import sample.context.audit.AuditWriter.BackpressurePolicy;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+public class AuditHandlerTest {
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void metrics() {
+        var writer = new AuditWriter(dataSource, false, 16, 16, Duration.ofMillis(10),
+                BackpressurePolicy.DROP, dir.resolve("unused.tsv"), 0);
+        var registry = new SimpleMeterRegistry();
+        var audit = new AuditHandler(writer);
+        audit.bindTo(registry);
+
+        assertEquals("ok", audit.audit("test", () -> "ok"));
+        try {
+            audit.audit("test", () -> {
+                throw ValidationException.of(ErrorKeys.LockTimeout);
+            });
+            fail();
+        } catch (ValidationException e) {
+        }
+        try {
+            audit.audit("test", (Runnable) () -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        assertEquals(3, registry.get("sample.audit.usecase").tag("operation", "test").timer().count());
+        for (String outcome : new String[] { "End", "Warning", "Exception" }) {
+            assertEquals(1, registry.get("sample.audit.usecase.outcome")
+                    .tag("operation", "test").tag("outcome", outcome).counter().count());
+        }
+    }
+
+}
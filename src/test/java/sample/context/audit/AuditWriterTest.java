@@ -0,0 +1,146 @@
+package sample.context.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.actor.Actor;
+import sample.context.audit.AuditRecord.AuditStatusType;
+import sample.context.audit.AuditWriter.BackpressurePolicy;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AuditWriterTest {
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void ringBuffer() throws Exception {
+        var buffer = new AuditRingBuffer<long[]>(64);
+        assertEquals(64, buffer.capacity());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final long producer = i;
+                futures.add(executor.submit(() -> {
+                    for (long j = 0; j < 10000; j++) {
+                        while (!buffer.offer(new long[] { producer, j })) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                }));
+            }
+            // Each producer's elements are taken in order.
+            long[] next = new long[4];
+            long taken = 0;
+            while (taken < 40000) {
+                taken += buffer.drain(e -> {
+                    assertEquals(next[(int) e[0]]++, e[1]);
+                }, 16);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(0, buffer.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void spill() throws Exception {
+        Path spillFile = dir.resolve("audit-spill.tsv");
+        var writer = new AuditWriter(dataSource, true, 4, 2, Duration.ofMillis(10),
+                BackpressurePolicy.SPILL, spillFile, 0);
+        // The writer is not started, so the buffer is full after 4 records.
+        List<String> auditIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String auditId = writer.nextId();
+            auditIds.add(auditId);
+            writer.append(record(writer, auditId, Actor.Anonymous, AuditStatusType.PROCESSING));
+            writer.append(record(writer, auditId, Actor.System, AuditStatusType.PROCESSED));
+        }
+        assertEquals(2, writer.spilled());
+        assertEquals(2, Files.readAllLines(spillFile).size());
+        assertEquals(auditIds.get(2), Files.readAllLines(spillFile).get(0).split("\t")[1]);
+
+        writer.start();
+        writer.destroy();
+        assertEquals(4, writer.written());
+        var jdbc = new JdbcTemplate(dataSource);
+        for (String auditId : auditIds.subList(0, 2)) {
+            assertEquals(1, jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM audit_actor WHERE audit_id = ?", Integer.class, auditId));
+            assertEquals(1, jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM audit_event WHERE audit_id = ?", Integer.class, auditId));
+        }
+    }
+
+    @Test
+    public void spillFailedBatch() throws Exception {
+        Path spillFile = dir.resolve("audit-failed.tsv");
+        var writer = new AuditWriter(dataSource, true, 4, 1, Duration.ofMillis(10),
+                BackpressurePolicy.DROP, spillFile, 0);
+        String auditId = writer.nextId();
+        var record = record(writer, auditId, Actor.System, AuditStatusType.PROCESSED);
+        writer.append(record);
+        // The second batch fails on the duplicate ID.
+        writer.append(record);
+
+        writer.start();
+        writer.destroy();
+        assertEquals(1, writer.written());
+        assertEquals(1, writer.failed());
+        assertEquals(1, writer.spilled());
+        assertEquals(0, writer.dropped());
+        List<String> lines = Files.readAllLines(spillFile);
+        assertEquals(1, lines.size());
+        assertEquals(record.id(), lines.get(0).split("\t")[0]);
+    }
+
+    @Test
+    public void drop() {
+        var writer = new AuditWriter(dataSource, false, 1, 1, Duration.ofMillis(10),
+                BackpressurePolicy.DROP, dir.resolve("unused.tsv"), 0);
+        String auditId = writer.nextId();
+        writer.append(record(writer, auditId, Actor.Anonymous, AuditStatusType.PROCESSING));
+        writer.append(record(writer, auditId, Actor.Anonymous, AuditStatusType.PROCESSED));
+        assertEquals(1, writer.dropped());
+        assertFalse(Files.exists(dir.resolve("unused.tsv")));
+
+        writer.start();
+        writer.destroy();
+        assertEquals(1, writer.written());
+    }
+
+    private AuditRecord record(AuditWriter writer, String auditId, Actor actor, AuditStatusType statusType) {
+        Long elapsed = statusType == AuditStatusType.PROCESSING ? null : 1L;
+        return new AuditRecord(writer.nextId(), auditId, actor, "test", statusType, elapsed,
+                System.currentTimeMillis());
+    }
+
+}
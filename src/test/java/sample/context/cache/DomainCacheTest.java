@@ -0,0 +1,135 @@
+package sample.context.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import sample.context.cache.DomainCache.Region;
+
+public class DomainCacheTest {
+
+    @AfterEach
+    public void after() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void updateAfterCommit() {
+        Region<String, Integer> region = new DomainCache(true).region("test");
+        var loads = new AtomicInteger();
+        assertEquals(10, region.get("a", k -> loads.incrementAndGet() * 10));
+
+        begin();
+        region.update("a", v -> v + 1);
+        // The uncommitted change is not visible, and the entry is bypassed.
+        assertEquals(10, region.get("a").get());
+        assertEquals(20, region.get("a", k -> loads.incrementAndGet() * 10));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(11, region.get("a").get());
+        assertEquals(11, region.get("a", k -> loads.incrementAndGet() * 10));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void updateTwiceInTransaction() {
+        Region<String, Integer> region = new DomainCache(true).region("test");
+        region.get("a", k -> 10);
+
+        // The changes of one transaction are applied together.
+        begin();
+        region.update("a", v -> v + 1);
+        region.update("a", v -> v * 2);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(22, region.get("a").get());
+
+        // The eviction in the transaction wins over the other changes.
+        begin();
+        region.evict("a");
+        region.update("a", v -> v + 1);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(region.get("a").isEmpty());
+    }
+
+    @Test
+    public void evictOnRollback() {
+        Region<String, Integer> region = new DomainCache(true).region("test");
+        region.get("a", k -> 10);
+
+        begin();
+        region.update("a", v -> v + 1);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertTrue(region.get("a").isEmpty());
+
+        // The entry loaded in the rolled back transaction is not kept.
+        begin();
+        region.get("a", k -> 20);
+        assertTrue(region.get("a").isEmpty());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertTrue(region.get("a").isEmpty());
+    }
+
+    @Test
+    public void concurrentTransactions() {
+        Region<String, Integer> region = new DomainCache(true).region("test");
+        region.get("a", k -> 10);
+
+        // Two transactions changed the key, so the entry is evicted on the commit.
+        begin();
+        region.update("a", v -> v + 1);
+        var tx1 = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        begin();
+        region.update("a", v -> v + 2);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(region.get("a").isEmpty());
+        tx1.forEach(TransactionSynchronization::afterCommit);
+        tx1.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertTrue(region.get("a").isEmpty());
+
+        // The load which overlapped the other change is not kept.
+        begin();
+        assertEquals(13, region.get("a", k -> {
+            region.clear();
+            return 13;
+        }));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(region.get("a").isEmpty());
+        assertEquals(13, region.get("a", k -> 13));
+        assertEquals(13, region.get("a").get());
+    }
+
+    @Test
+    public void refuseSharedLock() {
+        new DomainCache(false, "jdbc");
+        new DomainCache(true, "memory");
+        try {
+            new DomainCache(true, "jdbc");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("sample.lock.backend"));
+        }
+    }
+
+    private void begin() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private void complete(int status) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+}
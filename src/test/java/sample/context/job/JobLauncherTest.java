@@ -0,0 +1,157 @@
+package sample.context.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.job.JobExecution.JobStatusType;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.MockDomainHelper;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JobLauncherTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private OrmRepository rep;
+    private JdbcTransactionManager txm;
+    private JobLauncher launcher;
+
+    @BeforeEach
+    public void before() {
+        rep = OrmRepository.of(new MockDomainHelper(), dataSource, jdbcTemplate);
+        txm = new JdbcTransactionManager(dataSource);
+        launcher = new JobLauncher(rep, txm, 2, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    public void after() {
+        launcher.destroy();
+    }
+
+    @Test
+    public void resume() throws Exception {
+        List<String> checkpoints = new ArrayList<>();
+        String id = launcher.submit("resume", ctx -> {
+            checkpoints.add(ctx.checkpoint());
+            ctx.checkpoint("a", 10, 1);
+            throw new IllegalStateException("down");
+        });
+        JobExecution failed = await(id);
+        assertEquals(JobStatusType.FAILED, failed.statusType());
+        assertEquals("a", failed.checkpoint());
+        assertEquals(10, failed.processed());
+
+        // The re-submission resumes from the checkpoint.
+        assertEquals(id, launcher.submit("resume", ctx -> {
+            checkpoints.add(ctx.checkpoint());
+            ctx.checkpoint("b", 5, 0);
+        }));
+        JobExecution completed = await(id);
+        assertEquals(JobStatusType.COMPLETED, completed.statusType());
+        assertEquals("b", completed.checkpoint());
+        assertEquals(15, completed.processed());
+        assertEquals(1, completed.failed());
+        assertNull(completed.message());
+
+        // The completed job does not run again on the day.
+        assertEquals(id, launcher.submit("resume", ctx -> checkpoints.add("rerun")));
+        assertEquals(JobStatusType.COMPLETED, await(id).statusType());
+        assertEquals(Arrays.asList(null, "a"), checkpoints);
+    }
+
+    @Test
+    public void takeover() throws Exception {
+        // The execution of the dead node, which has not been updated for the stale timeout.
+        var now = rep.dh().time().tp();
+        JobExecution stale = TxTemplate.of(txm).tx(() -> rep.save(JobExecution.builder()
+                .id("takeover")
+                .jobName("takeover")
+                .baseDay(now.day())
+                .statusType(JobStatusType.RUNNING)
+                .checkpoint("c")
+                .processed(3)
+                .startDate(now.date().minusMinutes(10))
+                .updateDate(now.date().minusMinutes(10))
+                .build()));
+
+        List<String> checkpoints = new ArrayList<>();
+        assertEquals(stale.id(), launcher.submit("takeover", ctx -> {
+            checkpoints.add(ctx.checkpoint());
+            ctx.checkpoint("d", 2, 0);
+        }));
+        JobExecution completed = await(stale.id());
+        assertEquals(JobStatusType.COMPLETED, completed.statusType());
+        assertEquals("d", completed.checkpoint());
+        assertEquals(5, completed.processed());
+        assertEquals(List.of("c"), checkpoints);
+    }
+
+    @Test
+    public void heartbeat() throws Exception {
+        var node1 = new JobLauncher(rep, txm, 1, Duration.ofMillis(300));
+        var node2 = new JobLauncher(rep, txm, 1, Duration.ofMillis(300));
+        try {
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            String id = node1.submit("heartbeat", ctx -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            started.await(5, TimeUnit.SECONDS);
+
+            // The long chunk without the checkpoint is kept alive over the stale timeout.
+            Thread.sleep(900);
+            List<String> taken = new ArrayList<>();
+            assertEquals(id, node2.submit("heartbeat", ctx -> taken.add(ctx.id())));
+            release.countDown();
+            assertEquals(JobStatusType.COMPLETED, await(id).statusType());
+            assertEquals(List.of(), taken);
+        } finally {
+            node1.destroy();
+            node2.destroy();
+        }
+    }
+
+    private JobExecution await(String id) throws Exception {
+        long limit = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < limit) {
+            JobExecution execution = launcher.load(id);
+            if (execution.statusType() != JobStatusType.RUNNING) {
+                return execution;
+            }
+            Thread.sleep(20);
+        }
+        throw new TimeoutException(id);
+    }
+
+}
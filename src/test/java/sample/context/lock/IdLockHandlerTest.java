@@ -0,0 +1,267 @@
+package sample.context.lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import jdk.jfr.consumer.RecordingStream;
+
+import sample.context.ErrorKeys;
+import sample.context.ValidationException;
+import sample.context.lock.IdLockHandler.IdLockPair;
+import sample.context.lock.IdLockHandler.LockMode;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.lock.IdLockTable.RefCountLockTable;
+import sample.context.lock.IdLockTable.StripedLockTable;
+
+public class IdLockHandlerTest {
+
+    @ParameterizedTest
+    @EnumSource(LockMode.class)
+    public void writeLock(LockMode mode) throws Exception {
+        var idLock = new IdLockHandler(mode, 4);
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        idLock.call("sample", LockType.WRITE, () -> {
+                            counter[0]++;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8000, counter[0]);
+    }
+
+    /** The waiter of the lock does not pin the virtual thread. (JFR jdk.VirtualThreadPinned) */
+    @ParameterizedTest
+    @EnumSource(LockMode.class)
+    public void virtualThreadNotPinned(LockMode mode) throws Exception {
+        var idLock = new IdLockHandler(mode, 4);
+        List<String> pinned = new CopyOnWriteArrayList<>();
+        try (var recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", e -> pinned.add(String.valueOf(e.getStackTrace())));
+            recording.startAsync();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    futures.add(executor.submit(() -> idLock.call("sample", LockType.WRITE, () -> {
+                        Thread.sleep(1);
+                        return null;
+                    })));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            recording.stop();
+        }
+        assertTrue(pinned.isEmpty(), pinned.toString());
+    }
+
+    /** Hammers crossed lock orders. (it times out when deadlocked) */
+    @ParameterizedTest
+    @EnumSource(LockMode.class)
+    public void lockAllCrossed(LockMode mode) throws Exception {
+        var idLock = new IdLockHandler(mode, 2);
+        List<String> ids = List.of("a", "b", "c", "d");
+        int[] counters = new int[ids.size()];
+        int threads = 16;
+        int loops = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int offset = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < loops; j++) {
+                        int from = (offset + j) % ids.size();
+                        int to = (from + 1 + (j % (ids.size() - 1))) % ids.size();
+                        List<IdLockPair> pairs = (offset % 2 == 0)
+                                ? List.of(new IdLockPair(ids.get(from), LockType.WRITE),
+                                        new IdLockPair(ids.get(to), LockType.WRITE))
+                                : List.of(new IdLockPair(ids.get(to), LockType.WRITE),
+                                        new IdLockPair(ids.get(from), LockType.READ),
+                                        new IdLockPair(ids.get(from), LockType.WRITE));
+                        idLock.call(pairs, Duration.ofSeconds(10), () -> {
+                            counters[from]++;
+                            counters[to]++;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int total = 0;
+        for (int counter : counters) {
+            total += counter;
+        }
+        assertEquals(threads * loops * 2, total);
+    }
+
+    /** The WRITE lock under the READ lock of the same instance fails instead of the deadlock. */
+    @ParameterizedTest
+    @EnumSource(LockMode.class)
+    public void upgradeFails(LockMode mode) {
+        var idLock = new IdLockHandler(mode, 1);
+        List<String> ids = mode == LockMode.STRIPED ? List.of("a", "b") : List.of("a");
+        idLock.call("a", LockType.READ, () -> {
+            for (String id : ids) {
+                try {
+                    idLock.lock(id, LockType.WRITE, null);
+                    fail();
+                } catch (IllegalStateException e) {
+                    assertTrue(e.getMessage().contains(id));
+                }
+            }
+            // The READ lock is reentrant.
+            idLock.call("a", LockType.READ, () -> {
+            });
+        });
+        // The failed request does not keep the lock.
+        for (String id : ids) {
+            assertEquals("ok", idLock.call(id, LockType.WRITE, Duration.ofMillis(50), () -> "ok"));
+        }
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        var idLock = new IdLockHandler();
+        var locked = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> {
+                idLock.call("sample", LockType.WRITE, () -> {
+                    locked.countDown();
+                    finish.await();
+                    return null;
+                });
+            });
+            locked.await();
+            try {
+                idLock.call("sample", LockType.READ, Duration.ofMillis(50), () -> {
+                    fail();
+                });
+                fail();
+            } catch (ValidationException e) {
+                assertEquals(ErrorKeys.LockTimeout, e.getMessage());
+            }
+            assertTrue(idLock.tryLock("other", LockType.WRITE));
+            idLock.unlock("other");
+            finish.countDown();
+            holder.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("ok", idLock.call("sample", LockType.WRITE, Duration.ofMillis(50), () -> "ok"));
+    }
+
+    /** Two nodes share the lease store. */
+    @Test
+    public void lease() {
+        ConcurrentMap<String, String> leases = new ConcurrentHashMap<>();
+        var nodeA = new IdLockHandler(LockMode.REF_COUNT, 1, Optional.of(leaseStore(leases, "A")),
+                Duration.ofSeconds(30));
+        var nodeB = new IdLockHandler(LockMode.REF_COUNT, 1, Optional.of(leaseStore(leases, "B")),
+                Duration.ofSeconds(30));
+        nodeA.call("sample", LockType.WRITE, () -> {
+            assertFalse(nodeB.tryLock("sample", LockType.WRITE));
+            try {
+                nodeB.call("sample", LockType.WRITE, Duration.ofMillis(50), () -> {
+                    fail();
+                });
+                fail();
+            } catch (ValidationException e) {
+                assertEquals(ErrorKeys.LockTimeout, e.getMessage());
+            }
+            // READ lock is local only.
+            nodeB.call("sample", LockType.READ, Duration.ofMillis(50), () -> {
+            });
+            // reentrant
+            nodeA.call("sample", LockType.WRITE, () -> {
+            });
+            assertEquals("A", leases.get("sample"));
+        });
+        assertTrue(leases.isEmpty());
+        nodeB.call("sample", LockType.WRITE, Duration.ofMillis(50), () -> {
+            assertEquals("B", leases.get("sample"));
+        });
+    }
+
+    private IdLeaseStore leaseStore(ConcurrentMap<String, String> leases, String owner) {
+        return new IdLeaseStore() {
+            @Override
+            public boolean tryAcquire(String id, Duration lease) {
+                String current = leases.putIfAbsent(id, owner);
+                return current == null || current.equals(owner);
+            }
+
+            @Override
+            public boolean renew(String id, Duration lease) {
+                return owner.equals(leases.get(id));
+            }
+
+            @Override
+            public void release(String id) {
+                leases.remove(id, owner);
+            }
+        };
+    }
+
+    @Test
+    public void refCountEviction() {
+        var table = new RefCountLockTable();
+        var lock = table.acquire("sample");
+        assertSame(lock, table.acquire("sample"));
+        assertEquals(1, table.size());
+        table.release("sample");
+        assertEquals(1, table.size());
+        table.release("sample");
+        assertEquals(0, table.size());
+        assertNotSame(lock, table.acquire("sample"));
+    }
+
+    @Test
+    public void stripedSize() {
+        var table = new StripedLockTable(5);
+        for (int i = 0; i < 100; i++) {
+            int index = table.index("id" + i);
+            assertTrue(0 <= index && index < 8);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package sample.context.lock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.ErrorKeys;
+import sample.context.ValidationException;
+import sample.context.lock.IdLockHandler.LockMode;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.orm.TxTemplate;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+public class JdbcIdLeaseStoreTest {
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTransactionManager txm;
+    private JdbcIdLeaseStore nodeA;
+    private JdbcIdLeaseStore nodeB;
+
+    @BeforeEach
+    public void before() {
+        txm = new JdbcTransactionManager(dataSource);
+        nodeA = new JdbcIdLeaseStore(dataSource, txm, "nodeA");
+        nodeB = new JdbcIdLeaseStore(dataSource, txm, "nodeB");
+    }
+
+    @Test
+    public void acquire() {
+        assertTrue(nodeA.tryAcquire("lease1", Duration.ofSeconds(30)));
+        // The lease of the same node can be taken again.
+        assertTrue(nodeA.tryAcquire("lease1", Duration.ofSeconds(30)));
+        assertFalse(nodeB.tryAcquire("lease1", Duration.ofSeconds(30)));
+
+        // The lease of the other node is not released.
+        nodeB.release("lease1");
+        assertFalse(nodeB.tryAcquire("lease1", Duration.ofSeconds(30)));
+
+        nodeA.release("lease1");
+        assertTrue(nodeB.tryAcquire("lease1", Duration.ofSeconds(30)));
+        nodeB.release("lease1");
+    }
+
+    @Test
+    public void expire() throws Exception {
+        assertTrue(nodeA.tryAcquire("lease2", Duration.ofMillis(10)));
+        Thread.sleep(50);
+        assertTrue(nodeB.tryAcquire("lease2", Duration.ofSeconds(30)));
+        assertFalse(nodeA.tryAcquire("lease2", Duration.ofSeconds(30)));
+        nodeB.release("lease2");
+    }
+
+    @Test
+    public void renew() throws Exception {
+        var idLock = new IdLockHandler(LockMode.REF_COUNT, 4, Optional.of(nodeA), Duration.ofMillis(300));
+        try {
+            // The lease is renewed while the lock is held over the lease time.
+            idLock.call("lease3", LockType.WRITE, () -> {
+                Thread.sleep(700);
+                assertFalse(nodeB.tryAcquire("lease3", Duration.ofSeconds(30)));
+                return null;
+            });
+            assertTrue(nodeB.tryAcquire("lease3", Duration.ofSeconds(30)));
+            nodeB.release("lease3");
+        } finally {
+            idLock.destroy();
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void lost() throws Exception {
+        var jdbc = new JdbcTemplate(dataSource);
+        var idLock = new IdLockHandler(LockMode.REF_COUNT, 4, Optional.of(nodeA), Duration.ofMillis(300));
+        try {
+            TxTemplate.of(txm).writeIdLock(idLock, "lease4").tx(() -> {
+                jdbc.update("INSERT INTO id_lock (id) VALUES ('lease4-work')");
+                // The lease expired (e.g. a long pause of the node), and nodeB took it over.
+                TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                    jdbc.update("UPDATE id_lock SET expire_date = ? WHERE id = 'lease4'",
+                            Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+                });
+                assertTrue(nodeB.tryAcquire("lease4", Duration.ofSeconds(30)));
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            fail();
+        } catch (ValidationException e) {
+            assertEquals(ErrorKeys.LockLost, e.getMessage());
+        } finally {
+            idLock.destroy();
+        }
+        // The work under the lost lease is rolled back, and the lease of nodeB is kept.
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM id_lock WHERE id = 'lease4-work'", Integer.class));
+        assertFalse(nodeA.tryAcquire("lease4", Duration.ofSeconds(30)));
+        nodeB.release("lease4");
+    }
+
+}
@@ -0,0 +1,111 @@
+package sample.context.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import sample.context.mail.MailHandler.SendMail;
+
+public class MailHandlerTest {
+
+    @Test
+    public void sendAsync() {
+        var mail = new MailHandler(false, 2, 16, Duration.ZERO);
+        mail.start();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(mail.sendAsync(mail("a@example.com", "subject" + i)));
+            }
+            futures.forEach(CompletableFuture::join);
+            assertEquals(10, mail.queued());
+            assertEquals(10, mail.sent());
+            assertEquals(10, mail.delivered());
+        } finally {
+            mail.destroy();
+        }
+    }
+
+    @Test
+    public void coalesce() {
+        var mail = new MailHandler(false, 2, 16, Duration.ofMillis(200));
+        mail.start();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(mail.sendAsync(mail("a@example.com", "subject" + i)));
+            }
+            futures.add(mail.sendAsync(mail("b@example.com", "subject")));
+            futures.forEach(CompletableFuture::join);
+            assertEquals(4, mail.sent());
+            assertEquals(2, mail.delivered());
+        } finally {
+            mail.destroy();
+        }
+    }
+
+    @Test
+    public void queueFull() throws Exception {
+        var mail = new MailHandler(true, 1, 1, Duration.ZERO) {
+            private final CountDownLatch latch = new CountDownLatch(1);
+
+            @Override
+            public MailHandler send(SendMail m) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return this;
+            }
+        };
+        mail.start();
+        try {
+            // The worker blocks with one mail, and the queue holds one mail.
+            List<CompletableFuture<Void>> accepted = new ArrayList<>();
+            CompletableFuture<Void> rejected = null;
+            for (int i = 0; i < 10 && rejected == null; i++) {
+                var future = mail.sendAsync(mail("a@example.com", "subject" + i));
+                if (future.isCompletedExceptionally()) {
+                    rejected = future;
+                } else {
+                    accepted.add(future);
+                }
+            }
+            try {
+                rejected.join();
+                fail();
+            } catch (CompletionException e) {
+                assertEquals(RejectedExecutionException.class, e.getCause().getClass());
+            }
+            mail.latch.countDown();
+            accepted.forEach(CompletableFuture::join);
+            assertEquals(1, mail.failed());
+            assertEquals(mail.queued(), mail.sent() + mail.failed());
+        } finally {
+            mail.destroy();
+        }
+    }
+
+    @Test
+    public void render() {
+        var m = new SendMail("a@example.com", "subject", "Dear {name}, {name}.", Map.of("name", "Sample"));
+        assertEquals("Dear Sample, Sample.", m.render());
+    }
+
+    private SendMail mail(String address, String subject) {
+        return new SendMail(address, subject, "{name}", Map.of("name", "Sample"));
+    }
+
+}
@@ -0,0 +1,24 @@
+package sample.context.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class MailTemplateTest {
+
+    @Test
+    public void render() {
+        var template = MailTemplate.compile("[{id}] Dear {name}, {name}.");
+        assertEquals("[CIO1] Dear Sample, Sample.", template.render(Map.of("id", "CIO1", "name", "Sample")));
+        assertEquals("[{id}] Dear Other, Other.", template.render(Map.of("name", "Other")));
+
+        assertEquals("no placeholder", MailTemplate.compile("no placeholder").render(Map.of()));
+        assertEquals("{", MailTemplate.compile("{").render(Map.of()));
+        assertEquals("a{b", MailTemplate.compile("a{b").render(Map.of("b", "x")));
+        assertEquals("x}", MailTemplate.compile("{b}}").render(Map.of("b", "x")));
+        assertEquals("", MailTemplate.compile("{}").render(Map.of("", "")));
+    }
+
+}
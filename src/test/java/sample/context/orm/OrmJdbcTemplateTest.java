@@ -0,0 +1,30 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+public class OrmJdbcTemplateTest {
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void parsedSqlCache() {
+        var jdbc = new OrmJdbcTemplate(dataSource, 2);
+        assertEquals(2, jdbc.getCacheLimit());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM id_sequence WHERE id = :id", Map.of("id", "none"), Long.class));
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package sample.context.orm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.test.context.ActiveProfiles;
+
+import sample.ActionStatusType;
+import sample.model.DataFixtures;
+import sample.model.DomainTester;
+import sample.model.asset.CashBalance;
+import sample.model.asset.Cashflow;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+public class OrmRepositoryTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private DomainTester tester;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTester.create(jdbcTemplate, dataSource);
+    }
+
+    @Test
+    public void saveOrUpdate() {
+        tester.tx(rep -> {
+            assertEquals(OrmDialect.H2, rep.dialect());
+            assertTrue(rep.dialect().upsert(rep.mapping().entity(Cashflow.class)).isPresent());
+
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            Cashflow cf = rep.saveOrUpdate(DataFixtures.cf(rep.dh(), "test1", "100", day, day).build());
+            Cashflow saved = rep.load(Cashflow.class, cf.id());
+            assertEquals(new BigDecimal("100"), saved.amount().setScale(0));
+            assertEquals(ActionStatusType.UNPROCESSED, saved.statusType());
+
+            rep.saveOrUpdate(cf.copyBuilder()
+                    .amount(new BigDecimal("200"))
+                    .statusType(ActionStatusType.PROCESSED)
+                    .build());
+            Cashflow updated = rep.load(Cashflow.class, cf.id());
+            assertEquals(new BigDecimal("200"), updated.amount().setScale(0));
+            assertEquals(ActionStatusType.PROCESSED, updated.statusType());
+            assertEquals(1, rep.tmpl().count(Cashflow.class, "id", cf.id()));
+        });
+    }
+
+    @Test
+    public void paging() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            for (String amount : List.of("100", "300", "300", "200", "500")) {
+                rep.save(DataFixtures.cf(rep.dh(), "test1", amount, day, day).build());
+            }
+            var pageable = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "amount"));
+            var page = rep.findAll(Cashflow.class, pageable);
+            assertEquals(5, page.getTotalElements());
+            assertEquals(List.of("300", "200"), amounts(page.getContent()));
+
+            var slice = rep.findSlice(Cashflow.class, pageable.withPage(2));
+            assertEquals(List.of("100"), amounts(slice.getContent()));
+            assertFalse(slice.hasNext());
+
+            List<Cashflow> scrolled = new ArrayList<>();
+            KeysetScrollPosition position = ScrollPosition.keyset();
+            Window<Cashflow> window;
+            do {
+                window = rep.scroll(Cashflow.class, Sort.by(Sort.Direction.DESC, "amount"), position, 2);
+                scrolled.addAll(window.getContent());
+                if (window.hasNext()) {
+                    position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+                }
+            } while (window.hasNext());
+            assertEquals(List.of("500", "300", "300", "200", "100"), amounts(scrolled));
+            assertEquals(5, scrolled.stream().map(Cashflow::id).distinct().count());
+        });
+    }
+
+    @Test
+    public void stream() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            for (String amount : List.of("100", "300", "200", "500")) {
+                rep.save(DataFixtures.cf(rep.dh(), "test1", amount, day, day).build());
+            }
+            rep.save(DataFixtures.cf(rep.dh(), "test2", "400", day, day).build());
+            try (Stream<Cashflow> stream = rep.tmpl().stream(Cashflow.class, criteria -> criteria
+                    .and("accountId").is("test1")
+                    .and("statusType").in(ActionStatusType.UNPROCESSED_TYPES)
+                    .and(Criteria.where("amount").lessThan(new BigDecimal("500"))
+                            .or("valueDay").isNull()),
+                    Sort.by(Sort.Direction.DESC, "amount"), 2)) {
+                assertEquals(List.of("300", "200", "100"), amounts(stream.toList()));
+            }
+        });
+    }
+
+    @Test
+    public void batch() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            List<Cashflow> list = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                list.add(DataFixtures.cf(rep.dh(), "test1", String.valueOf(i), day, day).build());
+            }
+            rep.insertBatch(list, 10);
+            assertEquals(25, rep.tmpl().count(Cashflow.class, "accountId", "test1"));
+            assertEquals(new BigDecimal("24"), rep.load(Cashflow.class, list.get(24).id()).amount().setScale(0));
+
+            rep.updateBatch(list.stream()
+                    .map(cf -> cf.copyBuilder().statusType(ActionStatusType.PROCESSED).build())
+                    .toList(), 10);
+            assertEquals(25, rep.tmpl().count(Cashflow.class, "statusType", ActionStatusType.PROCESSED));
+        });
+    }
+
+    @Test
+    public void insertIfAbsentBatch() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            rep.save(DataFixtures.cb(rep.dh(), "test1", day, "JPY", "100").build());
+            List<CashBalance> list = List.of(
+                    DataFixtures.cb(rep.dh(), "test1", day, "JPY", "200").build(),
+                    DataFixtures.cb(rep.dh(), "test1", day, "USD", "300").build(),
+                    DataFixtures.cb(rep.dh(), "test2", day, "JPY", "400").build());
+            // The balance of the same key is kept.
+            assertEquals(2, rep.insertIfAbsentBatch(list, "accountId", "currency", "baseDay"));
+            assertEquals(3, rep.tmpl().count(CashBalance.class, "baseDay", day));
+            assertEquals(new BigDecimal("100"), CashBalance.getOrNew(rep, "test1", "JPY").amount().setScale(0));
+            assertEquals(0, rep.insertIfAbsentBatch(list, "accountId", "currency", "baseDay"));
+        });
+    }
+
+    private List<String> amounts(List<Cashflow> list) {
+        return list.stream().map(cf -> cf.amount().setScale(0).toPlainString()).toList();
+    }
+
+}
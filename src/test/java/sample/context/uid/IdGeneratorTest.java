@@ -0,0 +1,71 @@
+package sample.context.uid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import sample.context.uid.IdSequenceStore.MemoryIdSequenceStore;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void generateCashInOut() throws Exception {
+        var reserved = new AtomicInteger();
+        var memory = new MemoryIdSequenceStore();
+        var uid = new IdGenerator((key, size) -> {
+            reserved.incrementAndGet();
+            return memory.reserve(key, size);
+        }, 10);
+        assertEquals("CIO1", uid.generate("CashInOut"));
+
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        ids.add(uid.generate("CashInOut"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(800, ids.size());
+        assertEquals(81, reserved.get());
+        assertEquals("CIO802", uid.generate("CashInOut"));
+    }
+
+    @Test
+    public void generateTimeOrdered() {
+        var uid = new IdGenerator(new MemoryIdSequenceStore(), 10, Set.of("Cashflow"), 3);
+        String prev = uid.generate("Cashflow");
+        assertEquals(13, prev.length());
+        for (int i = 0; i < 10000; i++) {
+            String id = uid.generate("Cashflow");
+            assertTrue(prev.compareTo(id) < 0);
+            prev = id;
+        }
+        assertEquals(32, uid.generate("CashBalance").length());
+
+        var timeIds = new TimeIdGenerator(3);
+        long id = timeIds.nextLong();
+        assertEquals(3, (id >>> TimeIdGenerator.SEQUENCE_BITS) & TimeIdGenerator.MAX_NODE);
+        assertTrue(TimeIdGenerator.format(id).compareTo(TimeIdGenerator.format(id + 1)) < 0);
+    }
+
+}
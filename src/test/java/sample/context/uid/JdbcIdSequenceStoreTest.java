@@ -0,0 +1,149 @@
+package sample.context.uid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.DataFixtures;
+import sample.model.MockDomainHelper;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JdbcIdSequenceStoreTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private JdbcIdSequenceStore store;
+
+    @BeforeEach
+    public void before() {
+        store = new JdbcIdSequenceStore(dataSource);
+        clean();
+    }
+
+    @AfterEach
+    public void after() {
+        clean();
+    }
+
+    private void clean() {
+        var jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("DELETE FROM id_sequence WHERE id = 'CashInOut'");
+        jdbc.update("DELETE FROM cash_in_out WHERE account_id = 'seq1'");
+    }
+
+    @Test
+    public void seedFromExistingRows() {
+        // The sequence added to the DB which already has the IDs.
+        var rep = OrmRepository.of(new MockDomainHelper(), dataSource, jdbcTemplate);
+        TxTemplate.of(new JdbcTransactionManager(dataSource)).tx(() -> {
+            for (String id : List.of("CIO9", "CIO12", "CIO10")) {
+                rep.save(DataFixtures.cio(id, "seq1", "10", true, rep.dh().time().tp()).build());
+            }
+        });
+        assertEquals(13L, store.reserve("CashInOut", 10));
+        assertEquals(23L, store.reserve("CashInOut", 10));
+        assertEquals(1L, store.reserve("Other", 10));
+        new JdbcTemplate(dataSource).update("DELETE FROM id_sequence WHERE id = 'Other'");
+    }
+
+    @Test
+    public void reserveOnPoolOfOne() throws Exception {
+        var config = new HikariConfig();
+        try (var con = dataSource.getConnection()) {
+            config.setJdbcUrl(con.getMetaData().getURL());
+            config.setUsername(con.getMetaData().getUserName());
+        }
+        config.setMaximumPoolSize(1);
+        config.setConnectionTimeout(1000);
+        try (var pool = new HikariDataSource(config)) {
+            var poolStore = new JdbcIdSequenceStore(pool, 1);
+            var uid = new IdGenerator(poolStore, 10);
+            try {
+                // The caller holds the only connection of the pool while it reserves the block.
+                String id = TxTemplate.of(new JdbcTransactionManager(pool)).tx(() -> {
+                    new JdbcTemplate(pool).queryForObject("SELECT COUNT(*) FROM id_sequence", Long.class);
+                    return uid.generate("CashInOut");
+                });
+                assertEquals("CIO1", id);
+            } finally {
+                poolStore.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void reserveFromTwoGenerators() throws Exception {
+        // The blocks reserved by the two nodes on the same table.
+        List<Long> firsts = new ArrayList<>();
+        IdSequenceStore recording = (key, size) -> {
+            long first = store.reserve(key, size);
+            synchronized (firsts) {
+                firsts.add(first);
+            }
+            return first;
+        };
+        var node1 = new IdGenerator(recording, 10);
+        var node2 = new IdGenerator(recording, 10);
+
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                IdGenerator uid = i % 2 == 0 ? node1 : node2;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        assertTrue(ids.add(uid.generate("CashInOut")));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, ids.size());
+
+        // The blocks are increasing by the block size without any gap or overlap.
+        List<Long> sorted = firsts.stream().sorted().toList();
+        assertEquals(1L, sorted.get(0));
+        for (int i = 1; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i - 1) + 10, sorted.get(i));
+        }
+        long next = sorted.get(sorted.size() - 1) + 10;
+        assertEquals(next, store.reserve("CashInOut", 5));
+        assertEquals(next + 5, store.reserve("CashInOut", 10));
+    }
+
+}
@@ -0,0 +1,162 @@
+package sample.model;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import sample.ActionStatusType;
+import sample.model.asset.CashBalance;
+import sample.model.asset.CashInOut;
+import sample.model.asset.CashInOut.FindCashInOut;
+import sample.model.asset.Cashflow;
+
+/**
+ * Checks that the finders of the asset domain use the indexes of
+ * schema.sql. (EXPLAIN on H2)
+ */
+@DataJdbcTest
+@ActiveProfiles("test")
+public class FinderIndexTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private DomainTester tester;
+
+    @BeforeEach
+    public void before() {
+        tester = DomainTester.create(jdbcTemplate, dataSource);
+    }
+
+    @Test
+    public void finders() throws Exception {
+        var recorder = ((RecordingDataSource) dataSource);
+        LocalDate day = LocalDate.of(2014, 11, 18);
+        tester.tx(rep -> {
+            recorder.statements.clear();
+            CashBalance.getOrNew(rep, "test1", "JPY");
+            Cashflow.findUnrealize(rep, "test1", "JPY", day);
+            Cashflow.findDoRealize(rep, day);
+            CashInOut.findUnprocessed(rep);
+            CashInOut.findUnprocessed(rep, "test1", "JPY", true);
+            CashInOut.findUnprocessed(rep, "test1");
+            CashInOut.find(rep, FindCashInOut.builder()
+                    .statusTypes(Set.of(ActionStatusType.UNPROCESSED))
+                    .updFromDay(day)
+                    .updToDay(day)
+                    .build());
+        });
+
+        List<RecordedStatement> selects = recorder.statements.stream()
+                .filter(s -> s.sql().trim().toUpperCase().startsWith("SELECT"))
+                .toList();
+        assertFalse(selects.isEmpty());
+        try (Connection con = recorder.getTargetDataSource().getConnection()) {
+            for (RecordedStatement s : selects) {
+                String plan = s.explain(con);
+                assertFalse(plan.contains("tableScan"), "Full table scan: " + plan);
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ds ? new RecordingDataSource(ds) : bean;
+                }
+            };
+        }
+    }
+
+    /** The DataSource which records the prepared statements and their parameters. */
+    static class RecordingDataSource extends DelegatingDataSource {
+        final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws java.sql.SQLException {
+            return record(super.getConnection());
+        }
+
+        private Connection record(Connection con) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        Object ret = invoke(con, method, args);
+                        if (method.getName().equals("prepareStatement") && args[0] instanceof String sql) {
+                            var statement = new RecordedStatement(sql, new ArrayList<>());
+                            statements.add(statement);
+                            return record((PreparedStatement) ret, statement);
+                        }
+                        return ret;
+                    });
+        }
+
+        private PreparedStatement record(PreparedStatement ps, RecordedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                        if (method.getName().startsWith("set") && args != null && 2 <= args.length
+                                && args[0] instanceof Integer) {
+                            statement.params().add(new Object[] { method, args });
+                        }
+                        return invoke(ps, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    static record RecordedStatement(String sql, List<Object[]> params) {
+        String explain(Connection con) throws Exception {
+            try (PreparedStatement ps = con.prepareStatement("EXPLAIN " + sql)) {
+                for (Object[] param : params) {
+                    ((Method) param[0]).invoke(ps, (Object[]) param[1]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    var plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        }
+    }
+
+}
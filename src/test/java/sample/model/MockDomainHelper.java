@@ -8,11 +8,13 @@ import sample.context.DomainHelper;
 import sample.context.MessageAccessor;
 import sample.context.MessageAccessor.MessageAccessorMock;
 import sample.context.Timestamper;
+import sample.context.cache.DomainCache;
 import sample.context.uid.IdGenerator;
 
 public class MockDomainHelper implements DomainHelper {
 
     private Map<String, String> settingMap = new HashMap<>();
+    private DomainCache cache = DomainCache.DISABLED;
 
     public Timestamper time() {
         return new Timestamper(LocalDate.of(2014, 11, 18));
@@ -26,6 +28,15 @@ public class MockDomainHelper implements DomainHelper {
         return new IdGenerator();
     }
 
+    public DomainCache cache() {
+        return cache;
+    }
+
+    public MockDomainHelper cache(DomainCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
     public MockDomainHelper setting(String id, String value) {
         settingMap.put(id, value);
         return this;
@@ -1,5 +1,6 @@
 package sample.model.asset;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -45,6 +46,8 @@ public class AssetTest {
                     .build());
             rep.save(DataFixtures.cio("1", "test", "8000", true, rep.dh().time().tp()).build());
 
+            assertEquals(new BigDecimal("1000"), Asset.of("test")
+                    .availableAmount(rep, "JPY", LocalDate.of(2014, 11, 21)).setScale(0));
             assertTrue(
                     Asset.of("test").canWithdraw(rep, "JPY", new BigDecimal("1000"), LocalDate.of(2014, 11, 21)));
             assertFalse(
@@ -16,6 +16,7 @@ import org.springframework.test.context.ActiveProfiles;
 
 import sample.model.DataFixtures;
 import sample.model.DomainTester;
+import sample.model.account.Account.AccountStatusType;
 
 @DataJdbcTest
 @ActiveProfiles("test")
@@ -78,4 +79,32 @@ public class CashBalanceTest {
             assertEquals(BigDecimal.ZERO, cbNew.amount());
         });
     }
+
+    @Test
+    public void rollover() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            rep.save(DataFixtures.acc("test1").build());
+            rep.save(DataFixtures.acc("test2").build());
+            rep.save(DataFixtures.acc("test3").statusType(AccountStatusType.WITHDRAWAL).build());
+            rep.save(DataFixtures.cb(rep.dh(), "test1", day, "JPY", "1000").build());
+            rep.save(DataFixtures.cb(rep.dh(), "test2", LocalDate.of(2014, 11, 16), "JPY", "2000").build());
+            rep.save(DataFixtures.cb(rep.dh(), "test2", LocalDate.of(2014, 11, 17), "JPY", "3000").build());
+            rep.save(DataFixtures.cb(rep.dh(), "test3", LocalDate.of(2014, 11, 17), "JPY", "4000").build());
+            rep.save(DataFixtures.acc("test4").build());
+            rep.save(DataFixtures.cb(rep.dh(), "test4", LocalDate.of(2014, 11, 17), "JPY", "5000").build());
+            rep.save(DataFixtures.cb(rep.dh(), "test4", LocalDate.of(2014, 11, 17), "USD", "60").build());
+
+            // The balance which the request of the day created first is kept.
+            assertEquals(new BigDecimal("5000"), CashBalance.getOrNew(rep, "test4", "JPY").amount().setScale(0));
+
+            // The balances of test2 and test4 are carried forward in the chunks of one account.
+            assertEquals(2, CashBalance.rollover(rep, day, 1));
+            assertEquals(0, CashBalance.rollover(rep, day, 1));
+            CashBalance cb = CashBalance.getOrNew(rep, "test2", "JPY");
+            assertEquals(day, cb.baseDay());
+            assertEquals(new BigDecimal("3000"), cb.amount().setScale(0));
+            assertEquals(new BigDecimal("60"), CashBalance.getOrNew(rep, "test4", "USD").amount().setScale(0));
+        });
+    }
 }
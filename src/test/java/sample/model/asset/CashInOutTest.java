@@ -8,6 +8,10 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.sql.DataSource;
@@ -213,4 +217,38 @@ public class CashInOutTest {
         });
     }
 
+    @Test
+    public void findUnprocessedShard() {
+        tester.tx(rep -> {
+            TimePoint tp = rep.dh().time().tp();
+            for (int i = 0; i < 20; i++) {
+                rep.save(DataFixtures.cio("s" + (100 + i), "shard" + (i % 7), "10", true, tp)
+                        .eventDay(tp.day())
+                        .build());
+            }
+            // Each account belongs to one shard, and the shards cover all the rows.
+            int shards = 3;
+            Map<String, Integer> accountShards = new HashMap<>();
+            Set<String> ids = new HashSet<>();
+            for (int shard = 0; shard < shards; shard++) {
+                String lastId = null;
+                while (true) {
+                    List<CashInOut> chunk = CashInOut.findUnprocessed(rep, lastId, 2, shard, shards);
+                    if (chunk.isEmpty()) {
+                        break;
+                    }
+                    assertTrue(chunk.size() <= 2);
+                    for (CashInOut cio : chunk) {
+                        assertTrue(lastId == null || lastId.compareTo(cio.id()) < 0);
+                        assertTrue(ids.add(cio.id()));
+                        assertEquals(shard, accountShards.merge(cio.accountId(), shard, (a, b) -> a));
+                        lastId = cio.id();
+                    }
+                }
+            }
+            assertEquals(20, ids.size());
+            assertEquals(7, accountShards.size());
+        });
+    }
+
 }
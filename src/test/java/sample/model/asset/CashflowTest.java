@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
@@ -94,6 +96,35 @@ public class CashflowTest {
         });
     }
 
+    @Test
+    public void realizeAll() {
+        tester.tx(rep -> {
+            LocalDate day = LocalDate.of(2014, 11, 18);
+            CashBalance.getOrNew(rep, "test1", "JPY");
+            rep.save(DataFixtures.cb(rep.dh(), "test2", LocalDate.of(2014, 11, 17), "JPY", "500").build());
+            var ids = Stream.of(
+                    DataFixtures.cf(rep.dh(), "test1", "1000", LocalDate.of(2014, 11, 17), day),
+                    DataFixtures.cf(rep.dh(), "test1", "2000", LocalDate.of(2014, 11, 17), day),
+                    DataFixtures.cf(rep.dh(), "test2", "300", LocalDate.of(2014, 11, 17), day),
+                    DataFixtures.cf(rep.dh(), "test3", "100", LocalDate.of(2014, 11, 17), day),
+                    DataFixtures.cf(rep.dh(), "test1", "9000", day, LocalDate.of(2014, 11, 19)))
+                    .map(cf -> rep.save(cf.build()).id())
+                    .toList();
+
+            // The value day of non-arrival is not realized.
+            assertEquals(List.of(ids.get(4)), Cashflow.realizeAll(rep, ids));
+            assertEquals(new BigDecimal("3000"), CashBalance.getOrNew(rep, "test1", "JPY").amount().setScale(0));
+            assertEquals(new BigDecimal("800"), CashBalance.getOrNew(rep, "test2", "JPY").amount().setScale(0));
+            assertEquals(new BigDecimal("100"), CashBalance.getOrNew(rep, "test3", "JPY").amount().setScale(0));
+            assertEquals(ActionStatusType.PROCESSED, Cashflow.load(rep, ids.get(0)).statusType());
+            assertEquals(ActionStatusType.UNPROCESSED, Cashflow.load(rep, ids.get(4)).statusType());
+
+            // The realized cashflow is not realized again.
+            assertEquals(ids.subList(0, 4), Cashflow.realizeAll(rep, ids.subList(0, 4)));
+            assertEquals(new BigDecimal("3000"), CashBalance.getOrNew(rep, "test1", "JPY").amount().setScale(0));
+        });
+    }
+
     @Test
     public void registerWithRealize() {
         tester.tx(rep -> {
@@ -0,0 +1,169 @@
+package sample.model.asset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.ValidationException;
+import sample.context.actor.Actor;
+import sample.context.actor.ActorSession;
+import sample.context.cache.DomainCache;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.DataFixtures;
+import sample.model.MockDomainHelper;
+import sample.model.asset.CashBalance.BalanceKey;
+import sample.model.asset.CashInOut.RegCashOut;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProjectedBalanceTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private static final String ccy = "JPY";
+    private static final List<String> accIds = List.of("pb1", "pb2");
+
+    private OrmRepository rep;
+    private JdbcTransactionManager txm;
+    private LocalDate baseDay;
+
+    @BeforeEach
+    public void before() {
+        rep = OrmRepository.of(new MockDomainHelper().cache(new DomainCache(true)), dataSource, jdbcTemplate);
+        txm = new JdbcTransactionManager(dataSource);
+        baseDay = rep.dh().time().day();
+        clean();
+        TxTemplate.of(txm).tx(() -> {
+            for (String accId : accIds) {
+                rep.save(DataFixtures.acc(accId).build());
+                rep.save(DataFixtures.fiAcc(rep.dh(), accId, Remarks.CASH_OUT, ccy).build());
+                rep.save(DataFixtures.cb(rep.dh(), accId, baseDay.minusDays(1), ccy, "10000").build());
+                // eventDay(T+1), so they can be cancelled.
+                for (int i = 0; i < 3; i++) {
+                    rep.save(DataFixtures.cio(accId + "-" + i, accId, "500", true, rep.dh().time().tp()).build());
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        ActorSession.unbind();
+        clean();
+    }
+
+    private void clean() {
+        var jdbc = new JdbcTemplate(dataSource);
+        for (String table : List.of("cash_in_out", "cashflow", "cash_balance", "fi_account")) {
+            jdbc.update("DELETE FROM " + table + " WHERE account_id IN ('pb1', 'pb2')");
+        }
+        jdbc.update("DELETE FROM account WHERE id IN ('pb1', 'pb2')");
+    }
+
+    /**
+     * Replays the operations, each in its own committed transaction, and compares
+     * the entry written through by them with the SQL of Asset.
+     */
+    @Test
+    public void replay() {
+        var random = new Random(20141118L);
+        for (String id : accIds) {
+            warm(id);
+        }
+        for (int i = 0; i < 300; i++) {
+            String accId = accIds.get(random.nextInt(accIds.size()));
+            int operation = random.nextInt(6);
+            ActorSession.bind(Actor.builder().id(accId).build());
+            try {
+                TxTemplate.of(txm).tx(() -> {
+                    switch (operation) {
+                        case 0 -> Cashflow.register(rep, DataFixtures.cfReg(accId,
+                                String.valueOf(random.nextInt(4000) - 2000), baseDay.plusDays(random.nextInt(4)))
+                                .build());
+                        case 1 -> CashInOut.withdraw(rep,
+                                new RegCashOut(accId, ccy, new BigDecimal(1 + random.nextInt(3000))));
+                        case 2 -> CashInOut.findUnprocessed(rep, accId, ccy, true).stream()
+                                .filter(cio -> !cio.eventDay().isAfter(baseDay))
+                                .findFirst()
+                                .ifPresent(cio -> cio.process(rep));
+                        case 3 -> CashInOut.findUnprocessed(rep, accId, ccy, true).stream()
+                                .filter(cio -> cio.eventDay().isAfter(baseDay))
+                                .findFirst()
+                                .ifPresent(cio -> cio.cancel(rep));
+                        case 4 -> CashBalance.getOrNew(rep, accId, ccy)
+                                .add(rep, new BigDecimal(random.nextInt(1000) - 500));
+                        default -> Cashflow.findUnrealize(rep, accId, ccy, baseDay).stream()
+                                .findFirst()
+                                .ifPresent(cf -> cf.realize(rep));
+                    }
+                });
+            } catch (ValidationException e) {
+                // The operation which is not allowed is rolled back, and its entry is evicted.
+                warm(accId);
+            }
+            for (String id : accIds) {
+                verify(id);
+            }
+        }
+    }
+
+    private void warm(String accId) {
+        TxTemplate.of(txm).readOnly().tx(() -> ProjectedBalance.of(rep, accId, ccy));
+    }
+
+    private void verify(String accId) {
+        // The committed changes are written through, so the entry is still kept.
+        var projected = ProjectedBalance.region(rep).get(new BalanceKey(accId, ccy));
+        assertTrue(projected.isPresent(), accId);
+        var asset = Asset.of(accId);
+        for (int i = 0; i < 5; i++) {
+            LocalDate valueDay = baseDay.plusDays(i);
+            BigDecimal expected = TxTemplate.of(txm).readOnly().tx(() -> asset.availableAmount(rep, ccy, valueDay));
+            BigDecimal actual = projected.get().availableAmount(valueDay);
+            assertEquals(0, expected.compareTo(actual), accId + " " + valueDay + ": " + expected + " != " + actual);
+        }
+    }
+
+    @Test
+    public void rollback() {
+        var key = new BalanceKey("pb1", ccy);
+        warm("pb1");
+        ActorSession.bind(Actor.builder().id("pb1").build());
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                CashInOut.withdraw(rep, new RegCashOut("pb1", ccy, new BigDecimal("1000")));
+                // The uncommitted change is not visible.
+                assertEquals(0, ProjectedBalance.region(rep).get(key).get().withdrawal().compareTo(new BigDecimal("1500")));
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("rollback", e.getMessage());
+        }
+        assertTrue(ProjectedBalance.region(rep).get(key).isEmpty());
+    }
+
+}
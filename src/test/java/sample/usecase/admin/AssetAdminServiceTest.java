@@ -0,0 +1,220 @@
+package sample.usecase.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.ActionStatusType;
+import sample.context.audit.AuditHandler;
+import sample.context.audit.AuditWriter;
+import sample.context.audit.AuditWriter.BackpressurePolicy;
+import sample.context.lock.IdLockHandler;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.DataFixtures;
+import sample.model.MockDomainHelper;
+import sample.model.asset.CashBalance;
+import sample.usecase.admin.AssetAdminService.ShardProgress;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class AssetAdminServiceTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    @TempDir
+    private Path dir;
+
+    private OrmRepository rep;
+    private JdbcTransactionManager txm;
+    private RecordingIdLockHandler idLock;
+    private AssetAdminService service;
+
+    @BeforeEach
+    public void before() {
+        rep = OrmRepository.of(new MockDomainHelper(), dataSource, jdbcTemplate);
+        txm = new JdbcTransactionManager(dataSource);
+        idLock = new RecordingIdLockHandler();
+        var writer = new AuditWriter(dataSource, false, 1024, 16, Duration.ofMillis(10),
+                BackpressurePolicy.DROP, dir.resolve("audit.tsv"), 0);
+        service = new AssetAdminService(rep, txm, new AuditHandler(writer), idLock);
+        ReflectionTestUtils.setField(service, "lockTimeout", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(service, "closingParallelism", 3);
+        ReflectionTestUtils.setField(service, "closingChunkSize", 2);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+    }
+
+    @AfterEach
+    public void after() {
+        service.destroy();
+        clean();
+    }
+
+    private void clean() {
+        var jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("DELETE FROM cashflow WHERE account_id LIKE 'par%'");
+        jdbc.update("DELETE FROM cash_in_out WHERE account_id LIKE 'par%'");
+        jdbc.update("DELETE FROM cash_balance WHERE account_id LIKE 'par%'");
+    }
+
+    @Test
+    public void closingCashOutParallel() {
+        register(8, 3);
+        service.closingCashOut();
+
+        // Each account is locked (and handled) by one worker only.
+        assertEquals(8, idLock.threads.size());
+        idLock.threads.values().forEach(threads -> assertEquals(1, threads.size()));
+        assertEquals(0, countUnprocessed());
+        List<ShardProgress> progress = service.closingCashOutProgress();
+        assertEquals(3, progress.size());
+        assertEquals(24, progress.stream().mapToLong(p -> p.processed().get()).sum());
+        assertEquals(0, progress.stream().mapToLong(p -> p.failed().get()).sum());
+        assertEquals(0, progress.stream().mapToLong(p -> p.skipped().get()).sum());
+    }
+
+    @Test
+    public void closingCashOutSequential() {
+        ReflectionTestUtils.setField(service, "closingParallelism", 1);
+        register(8, 3);
+        // The 24 rows are walked in the keyset chunks of 2 in one transaction.
+        service.closingCashOut();
+
+        assertEquals(8, idLock.threads.size());
+        assertEquals(0, countUnprocessed());
+    }
+
+    @Test
+    public void closingCashOutParallelChunkFailure() throws Exception {
+        register(8, 1);
+        // The chunk of par3 fails on the lock timeout, and the others are committed.
+        var held = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> idLock.call("par3", LockType.WRITE, () -> {
+            held.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }), "holder");
+        holder.start();
+        held.await(5, TimeUnit.SECONDS);
+        try {
+            service.closingCashOut();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        List<ShardProgress> progress = service.closingCashOutProgress();
+        long failed = progress.stream().mapToLong(p -> p.failed().get()).sum();
+        long processed = progress.stream().mapToLong(p -> p.processed().get()).sum();
+        assertTrue(1 <= failed && failed <= 2);
+        assertEquals(8, processed + failed);
+        assertEquals(failed, countUnprocessed());
+        assertEquals(ActionStatusType.UNPROCESSED.name(), new JdbcTemplate(dataSource).queryForObject(
+                "SELECT status_type FROM cash_in_out WHERE account_id = 'par3'", String.class));
+    }
+
+    @Test
+    public void realizeCashflowModes() {
+        // The PROCESSING cashflow is marked ERROR, and the future one is left in either mode.
+        RealizeResult each = realizeCashflow(false);
+        assertEquals(Map.of("par0", new BigDecimal("300"), "par1", new BigDecimal("200")), each.balances());
+        assertEquals(Map.of("PROCESSED", 5L, "ERROR", 1L, "UNPROCESSED", 1L), each.statuses());
+        assertEquals(each, realizeCashflow(true));
+    }
+
+    private RealizeResult realizeCashflow(boolean bulk) {
+        ReflectionTestUtils.setField(service, "realizeBulk", bulk);
+        var day = rep.dh().time().day();
+        TxTemplate.of(txm).tx(() -> {
+            for (int i = 0; i < 5; i++) {
+                rep.save(DataFixtures.cf(rep.dh(), "par" + (i % 2), "100", day, day).build());
+            }
+            rep.save(DataFixtures.cf(rep.dh(), "par0", "1000", day, day)
+                    .statusType(ActionStatusType.PROCESSING)
+                    .build());
+            rep.save(DataFixtures.cf(rep.dh(), "par1", "2000", day, day.plusDays(1)).build());
+        });
+        service.realizeCashflow();
+
+        Map<String, BigDecimal> balances = new TreeMap<>();
+        TxTemplate.of(txm).tx(() -> {
+            for (String accountId : List.of("par0", "par1")) {
+                balances.put(accountId, CashBalance.getOrNew(rep, accountId, "JPY").amount().setScale(0));
+            }
+        });
+        Map<String, Long> statuses = new TreeMap<>();
+        new JdbcTemplate(dataSource).query(
+                "SELECT status_type, COUNT(*) AS cnt FROM cashflow WHERE account_id LIKE 'par%' GROUP BY status_type",
+                rs -> {
+                    statuses.put(rs.getString("status_type"), rs.getLong("cnt"));
+                });
+        clean();
+        return new RealizeResult(balances, statuses);
+    }
+
+    /** The balances and the count of the cashflow per status after realizeCashflow. */
+    private static record RealizeResult(Map<String, BigDecimal> balances, Map<String, Long> statuses) {
+    }
+
+    private void register(int accounts, int perAccount) {
+        TxTemplate.of(txm).tx(() -> {
+            var now = rep.dh().time().tp();
+            for (int i = 0; i < accounts * perAccount; i++) {
+                rep.save(DataFixtures.cio("par" + (1000 + i), "par" + (i % accounts), "10", true, now)
+                        .eventDay(now.day())
+                        .build());
+            }
+        });
+    }
+
+    private long countUnprocessed() {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM cash_in_out WHERE account_id LIKE 'par%' AND status_type = 'UNPROCESSED'",
+                Long.class);
+    }
+
+    /** Records the threads which took the lock of each ID. */
+    private static class RecordingIdLockHandler extends IdLockHandler {
+        private final Map<Object, Set<String>> threads = new ConcurrentHashMap<>();
+
+        @Override
+        public void lock(Object id, LockType lockType, Duration timeout) {
+            super.lock(id, lockType, timeout);
+            if (!"holder".equals(Thread.currentThread().getName())) {
+                threads.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package sample.usecase.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.DataFixtures;
+import sample.model.MockDomainHelper;
+import sample.model.asset.CashInOut;
+import sample.usecase.event.AppMailEvent;
+import sample.usecase.event.type.AppMailType;
+import sample.usecase.mail.MailOutbox.OutboxStatusType;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class MailOutboxTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private OrmRepository rep;
+    private JdbcTransactionManager txm;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void before() {
+        rep = OrmRepository.of(new MockDomainHelper(), dataSource, jdbcTemplate);
+        txm = new JdbcTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("DELETE FROM mail_outbox");
+    }
+
+    @AfterEach
+    public void after() {
+        jdbc.update("DELETE FROM mail_outbox");
+        jdbc.update("DELETE FROM cash_in_out WHERE id LIKE 'outbox%'");
+    }
+
+    @Test
+    public void registerInTransaction() {
+        var deliver = new ServiceMailDeliver(rep, txm, null, null);
+        // The event is rolled back with the business data.
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                deliver.handleEvent(withdrawn("outbox1"));
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("rollback", e.getMessage());
+        }
+        assertEquals(0, count("outbox1"));
+
+        TxTemplate.of(txm).tx(() -> deliver.handleEvent(withdrawn("outbox2")));
+        assertEquals(1, count("outbox2"));
+
+        // The event is not written outside the transaction.
+        try {
+            deliver.handleEvent(AppMailEvent.of(AppMailType.FINISH_REQUEST_WITHDRAW,
+                    DataFixtures.cio("outbox3", "sample", "10", true, rep.dh().time().tp()).build()));
+            fail();
+        } catch (IllegalTransactionStateException e) {
+            assertEquals(0, count("outbox3"));
+        }
+    }
+
+    @Test
+    public void claim() {
+        MailOutbox registered = register("outbox1");
+        assertTrue(TxTemplate.of(txm).tx(() -> registered.claim(rep, Duration.ofMinutes(1))));
+        // The second claimer read the same row before the first claim.
+        assertFalse(TxTemplate.of(txm).tx(() -> registered.claim(rep, Duration.ofMinutes(1))));
+        // The claimed event is not due until the lease expires.
+        assertEquals(0, due().size());
+    }
+
+    @Test
+    public void dispatch() {
+        MailOutbox success = register("outbox1");
+        MailOutbox failure = register("outbox2");
+        var dispatcher = dispatcher(outbox -> outbox.id().equals(success.id())
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.failedFuture(new IllegalStateException("down")));
+
+        assertEquals(2, dispatcher.dispatch());
+        assertEquals(1, dispatcher.sent());
+        assertEquals(1, dispatcher.retried());
+        MailOutbox sent = load(success.id());
+        assertEquals(OutboxStatusType.SENT, sent.statusType());
+        assertEquals(1, sent.attempts());
+        assertNull(sent.lastError());
+
+        // The failure waits the backoff.
+        MailOutbox retried = load(failure.id());
+        assertEquals(OutboxStatusType.PENDING, retried.statusType());
+        assertEquals(1, retried.attempts());
+        assertEquals("java.lang.IllegalStateException: down", retried.lastError());
+        assertTrue(LocalDateTime.now().plusSeconds(50).isBefore(retried.nextAttemptDate()));
+        assertEquals(0, dispatcher.dispatch());
+
+        // The event is FAILED after max-attempts.
+        jdbc.update("UPDATE mail_outbox SET next_attempt_date = ? WHERE id = ?",
+                LocalDateTime.now().minusSeconds(1), failure.id());
+        assertEquals(1, dispatcher.dispatch());
+        assertEquals(1, dispatcher.failed());
+        MailOutbox failed = load(failure.id());
+        assertEquals(OutboxStatusType.FAILED, failed.statusType());
+        assertEquals(2, failed.attempts());
+        jdbc.update("UPDATE mail_outbox SET next_attempt_date = ? WHERE id = ?",
+                LocalDateTime.now().minusSeconds(1), failure.id());
+        assertEquals(0, dispatcher.dispatch());
+    }
+
+    @Test
+    public void failedWithoutError() {
+        MailOutbox registered = register("outbox1");
+        TxTemplate.of(txm).tx(() -> registered.failed(rep, null, 3, Duration.ofSeconds(1), Duration.ofMinutes(1)));
+        assertNull(jdbc.queryForObject("SELECT last_error FROM mail_outbox WHERE id = ?", String.class,
+                registered.id()));
+    }
+
+    private AppMailEvent<CashInOut> withdrawn(String id) {
+        CashInOut cio = rep.save(DataFixtures.cio(id, "sample", "10", true, rep.dh().time().tp()).build());
+        return AppMailEvent.of(AppMailType.FINISH_REQUEST_WITHDRAW, cio);
+    }
+
+    private MailOutbox register(String cioId) {
+        return TxTemplate.of(txm).tx(() -> MailOutbox.register(rep, withdrawn(cioId)));
+    }
+
+    private MailOutbox load(String id) {
+        return TxTemplate.of(txm).readOnly().tx(() -> rep.load(MailOutbox.class, id));
+    }
+
+    private List<MailOutbox> due() {
+        return TxTemplate.of(txm).readOnly().tx(() -> MailOutbox.findDue(rep, LocalDateTime.now(), 10));
+    }
+
+    private long count(String cioId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM mail_outbox WHERE ref_id = ?", Long.class, cioId);
+    }
+
+    private MailOutboxDispatcher dispatcher(Function<MailOutbox, CompletableFuture<Void>> send) {
+        var deliver = new ServiceMailDeliver(rep, txm, null, null) {
+            @Override
+            public CompletableFuture<Void> deliver(MailOutbox outbox) {
+                return send.apply(outbox);
+            }
+        };
+        return new MailOutboxDispatcher(rep, txm, deliver, false, Duration.ofSeconds(1), 10, 2,
+                Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofSeconds(5));
+    }
+
+}
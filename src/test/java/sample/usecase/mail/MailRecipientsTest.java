@@ -0,0 +1,79 @@
+package sample.usecase.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
+import org.springframework.data.jdbc.core.JdbcAggregateTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sample.context.orm.OrmRepository;
+import sample.context.orm.TxTemplate;
+import sample.model.DataFixtures;
+import sample.model.MockDomainHelper;
+
+@DataJdbcTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class MailRecipientsTest {
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcAggregateTemplate jdbcTemplate;
+
+    private OrmRepository rep;
+    private JdbcTransactionManager txm;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void before() {
+        rep = OrmRepository.of(new MockDomainHelper(), dataSource, jdbcTemplate);
+        txm = new JdbcTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        TxTemplate.of(txm).tx(() -> rep.save(DataFixtures.acc("recipient1").build()));
+    }
+
+    @AfterEach
+    public void after() {
+        jdbc.update("DELETE FROM account WHERE id = 'recipient1'");
+    }
+
+    @Test
+    public void readThrough() {
+        var recipients = new MailRecipients(rep, txm, 16, Duration.ofMinutes(10));
+        assertEquals("recipient1", recipients.get("recipient1").name());
+        assertEquals("hoge@example.com", recipients.get("recipient1").mail());
+
+        // The change is not read until the TTL.
+        rename("changed");
+        assertEquals("recipient1", recipients.get("recipient1").name());
+
+        // 0 size reads the account every time.
+        assertEquals("changed", new MailRecipients(rep, txm, 0, Duration.ofMinutes(10)).get("recipient1").name());
+    }
+
+    @Test
+    public void expire() throws Exception {
+        var recipients = new MailRecipients(rep, txm, 16, Duration.ofMillis(100));
+        assertEquals("recipient1", recipients.get("recipient1").name());
+        rename("changed");
+        Thread.sleep(200);
+        assertEquals("changed", recipients.get("recipient1").name());
+    }
+
+    private void rename(String name) {
+        jdbc.update("UPDATE account SET name = ? WHERE id = 'recipient1'", name);
+    }
+
+}